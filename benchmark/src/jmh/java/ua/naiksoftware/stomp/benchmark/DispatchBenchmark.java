@@ -0,0 +1,92 @@
+package ua.naiksoftware.stomp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.CompositeDisposable;
+import ua.naiksoftware.stomp.StompClient;
+import ua.naiksoftware.stomp.pathmatcher.RabbitPathMatcher;
+import ua.naiksoftware.stomp.pathmatcher.SimplePathMatcher;
+
+/**
+ * Whole inbound path of {@link StompClient}: a text WebSocket message is parsed, routed
+ * and delivered to its topic subscriber, all on the calling thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int subscriptions;
+
+    /**
+     * "subscription" frames carry the subscription header, others only the destination.
+     */
+    @Param({"subscription", "simple", "rabbit"})
+    String routing;
+
+    private final CompositeDisposable disposables = new CompositeDisposable();
+    private InMemoryConnectionProvider provider;
+    private StompClient client;
+    private String frame;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws InterruptedException {
+        provider = new InMemoryConnectionProvider();
+        client = new StompClient(provider);
+        if (routing.equals("rabbit")) {
+            client.setPathMatcher(new RabbitPathMatcher());
+        } else {
+            client.setPathMatcher(new SimplePathMatcher());
+        }
+        client.connect();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!client.isConnected()) {
+            if (System.currentTimeMillis() > deadline) throw new IllegalStateException("Not connected");
+            Thread.sleep(10);
+        }
+
+        String destination = null;
+        for (int i = 0; i < subscriptions; i++) {
+            destination = "/topic/benchmark-" + i;
+            disposables.add(client.topic(destination).subscribe(blackhole::consume));
+        }
+
+        StringBuilder builder = new StringBuilder("MESSAGE\n")
+                .append("destination:").append(destination).append('\n')
+                .append("message-id:1\n");
+        if (routing.equals("subscription")) {
+            builder.append("subscription:").append(client.getTopicId(destination)).append('\n');
+        }
+        frame = builder.append("content-type:application/json\n\n{\"price\":42}\u0000").toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        disposables.dispose();
+        client.disconnect();
+    }
+
+    @Benchmark
+    public void dispatch() {
+        provider.receive(frame);
+    }
+}
@@ -0,0 +1,54 @@
+package ua.naiksoftware.stomp.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.schedulers.Schedulers;
+import ua.naiksoftware.stomp.dto.LifecycleEvent;
+import ua.naiksoftware.stomp.provider.AbstractConnectionProvider;
+
+/**
+ * Connection without a socket: answers CONNECT with CONNECTED, counts other frames
+ * and lets a benchmark push inbound frames straight into the client pipeline.
+ */
+class InMemoryConnectionProvider extends AbstractConnectionProvider {
+
+    private static final String CONNECTED = "CONNECTED\nversion:1.2\nheart-beat:0,0\n\n\u0000";
+
+    private final AtomicLong sentFrames = new AtomicLong();
+    private volatile Object socket;
+
+    void receive(String frame) {
+        emitMessage(frame);
+    }
+
+    long getSentFrames() {
+        return sentFrames.get();
+    }
+
+    @Override
+    protected void createWebSocketConnection() {
+        socket = new Object();
+        // like a real socket, open after messages() is subscribed
+        Schedulers.single().scheduleDirect(() -> emitLifecycleEvent(new LifecycleEvent(LifecycleEvent.Type.OPENED)));
+    }
+
+    @Override
+    protected void rawSend(String stompMessage) {
+        if (stompMessage.startsWith("CONNECT\n")) {
+            emitMessage(CONNECTED);
+        } else {
+            sentFrames.incrementAndGet();
+        }
+    }
+
+    @Override
+    protected void rawDisconnect() {
+        socket = null;
+        emitLifecycleEvent(new LifecycleEvent(LifecycleEvent.Type.CLOSED));
+    }
+
+    @Override
+    protected Object getSocket() {
+        return socket;
+    }
+}
@@ -0,0 +1,118 @@
+package ua.naiksoftware.stomp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.CompositeDisposable;
+import ua.naiksoftware.stomp.StompClient;
+import ua.naiksoftware.stomp.dto.StompCommand;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+import ua.naiksoftware.stomp.pathmatcher.PathMatcher;
+import ua.naiksoftware.stomp.pathmatcher.RabbitPathMatcher;
+import ua.naiksoftware.stomp.pathmatcher.SimplePathMatcher;
+import ua.naiksoftware.stomp.pathmatcher.SubscriptionPathMatcher;
+
+/**
+ * Finding the subscriptions of one MESSAGE among {@code subscriptions} paths:
+ * a linear {@link PathMatcher#matches} scan per matcher, and the indexed lookup of {@link RabbitPathMatcher}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathMatcherBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int subscriptions;
+
+    private final List<String> paths = new ArrayList<>();
+    private final List<String> wildcardPaths = new ArrayList<>();
+    private final CompositeDisposable disposables = new CompositeDisposable();
+
+    private SimplePathMatcher simple;
+    private SubscriptionPathMatcher subscription;
+    private RabbitPathMatcher rabbit;
+    private StompMessage message;
+    private StompMessage rabbitMessage;
+    private String rabbitDestination;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StompClient client = new StompClient(new InMemoryConnectionProvider());
+        rabbit = new RabbitPathMatcher();
+        for (int i = 0; i < subscriptions; i++) {
+            String path = "/topic/benchmark-" + i;
+            paths.add(path);
+            // subscribing before connect only registers the subscription, which is what the matcher needs
+            disposables.add(client.topic(path).subscribe());
+
+            String wildcardPath = i % 2 == 0 ? "/topic/rates." + i + ".*" : "/topic/rates.#." + i;
+            wildcardPaths.add(wildcardPath);
+            rabbit.addPath(wildcardPath);
+        }
+        simple = new SimplePathMatcher();
+        subscription = new SubscriptionPathMatcher(client);
+
+        // the last path, so a linear scan visits every subscription
+        String destination = paths.get(subscriptions - 1);
+        message = new StompMessage(StompCommand.MESSAGE, Arrays.asList(
+                new StompHeader(StompHeader.DESTINATION, destination),
+                new StompHeader(StompHeader.SUBSCRIPTION, client.getTopicId(destination))), "{}");
+
+        rabbitDestination = "/topic/rates." + (subscriptions - 1) + ".usd";
+        rabbitMessage = new StompMessage(StompCommand.MESSAGE, Collections.singletonList(
+                new StompHeader(StompHeader.DESTINATION, rabbitDestination)), "{}");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        disposables.dispose();
+    }
+
+    @Benchmark
+    public void simpleScan(Blackhole blackhole) {
+        scan(simple, paths, message, blackhole);
+    }
+
+    @Benchmark
+    public void subscriptionScan(Blackhole blackhole) {
+        scan(subscription, paths, message, blackhole);
+    }
+
+    @Benchmark
+    public void rabbitScan(Blackhole blackhole) {
+        scan(rabbit, wildcardPaths, rabbitMessage, blackhole);
+    }
+
+    @Benchmark
+    public Object rabbitIndexed() {
+        return rabbit.matchingPaths(rabbitDestination);
+    }
+
+    private static void scan(PathMatcher matcher, List<String> paths, StompMessage message, Blackhole blackhole) {
+        for (int i = 0, size = paths.size(); i < size; i++) {
+            blackhole.consume(matcher.matches(paths.get(i), message));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ua.naiksoftware.stomp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ua.naiksoftware.stomp.dto.SendTemplate;
+import ua.naiksoftware.stomp.dto.StompCommand;
+import ua.naiksoftware.stomp.dto.StompFrameEncoder;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * Frame parsing and serialization, by payload size and header count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StompMessageBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    int payloadSize;
+
+    @Param({"2", "8", "32"})
+    int headerCount;
+
+    private String frame;
+    private ByteBuffer binaryFrame;
+    private StompMessage message;
+    private StompMessage parsed;
+    private String payload;
+    private SendTemplate template;
+    private final StompFrameEncoder encoder = new StompFrameEncoder();
+
+    @Setup
+    public void setUp() {
+        List<StompHeader> headers = Frames.headers(headerCount);
+        payload = Frames.payload(payloadSize);
+        message = new StompMessage(StompCommand.MESSAGE, headers, payload);
+        template = SendTemplate.of("/topic/benchmark", headers.subList(1, headers.size()));
+        frame = message.compile();
+        binaryFrame = message.compileBytes();
+        parsed = StompMessage.from(frame);
+    }
+
+    @Benchmark
+    public StompMessage parse() {
+        return StompMessage.from(frame);
+    }
+
+    @Benchmark
+    public StompMessage parseBinary() {
+        return StompMessage.from(binaryFrame.duplicate());
+    }
+
+    /**
+     * Parse and route a frame which is then dropped unread, e.g. by conflation or a filter.
+     */
+    @Benchmark
+    public String parseAndRoute() {
+        return StompMessage.from(frame).findHeader(StompHeader.DESTINATION);
+    }
+
+    /**
+     * Routing lookup, as done per message by the subscription router and path matchers.
+     */
+    @Benchmark
+    public String findSubscription() {
+        return parsed.findHeader(StompHeader.SUBSCRIPTION);
+    }
+
+    @Benchmark
+    public String compile() {
+        return message.compile();
+    }
+
+    /**
+     * The bytes of a SEND frame built by {@link #compile()}, ready for the socket.
+     */
+    @Benchmark
+    public ByteBuffer compileBytes() {
+        return new StompMessage(StompCommand.SEND, template.getHeaders(), payload).compileBytes();
+    }
+
+    /**
+     * Same frame as {@link #compileBytes()} from a template into the reused buffer.
+     */
+    @Benchmark
+    public ByteBuffer encodeTemplate() {
+        return encoder.encode(template, payload);
+    }
+
+    static final class Frames {
+
+        private Frames() {
+        }
+
+        /**
+         * Destination and subscription first, like a broker sends them, then custom headers.
+         */
+        static List<StompHeader> headers(int count) {
+            List<StompHeader> headers = new ArrayList<>(count);
+            headers.add(new StompHeader(StompHeader.DESTINATION, "/topic/benchmark"));
+            if (count > 1) headers.add(new StompHeader(StompHeader.SUBSCRIPTION, "0"));
+            for (int i = 2; i < count; i++) {
+                headers.add(new StompHeader("x-header-" + i, "value-" + i));
+            }
+            return headers;
+        }
+
+        static String payload(int size) {
+            StringBuilder builder = new StringBuilder(size);
+            for (int i = 0; i < size; i++) {
+                builder.append((char) ('a' + i % 26));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Scheduler;
+
+/**
+ * Gathers ACK frames and writes them together after {@code maxMessages} acks or {@code maxDelayMs}
+ * since the first pending one, whichever comes first.
+ * <p>
+ * ACKs of a {@link AckMode#CLIENT} subscription are cumulative, so only the latest one per subscription
+ * is written. The client passes them in delivery order, see {@link Subscription#acknowledgeUpTo}. {@link AckMode#CLIENT_INDIVIDUAL} ACKs are all written, concatenated in one write.
+ */
+class AckBatcher {
+
+    interface Writer {
+        Completable write(String frames);
+    }
+
+    private final Writer writer;
+    private final Scheduler scheduler;
+    private final int maxMessages;
+    private final long maxDelayMs;
+
+    // guarded by this
+    private Map<String, Pending> pending = new LinkedHashMap<>();
+    private List<CompletableEmitter> emitters = new ArrayList<>();
+
+    AckBatcher(@Nonnull Writer writer, @Nonnull Scheduler scheduler, int maxMessages, long maxDelayMs) {
+        this.writer = writer;
+        this.scheduler = scheduler;
+        this.maxMessages = maxMessages;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * @param subscriptionId subscription of the acknowledged message
+     * @param cumulative     true if the frame acknowledges the previous messages of the subscription too
+     * @param frame          compiled ACK frame
+     * @return completes when the batch with the frame is written
+     */
+    Completable add(@Nonnull String subscriptionId, boolean cumulative, @Nonnull String frame) {
+        return Completable.create(emitter -> {
+            boolean flushNow;
+            boolean scheduleFlush;
+            synchronized (this) {
+                Pending subscriptionAcks = pending.get(subscriptionId);
+                if (subscriptionAcks == null) {
+                    subscriptionAcks = new Pending();
+                    pending.put(subscriptionId, subscriptionAcks);
+                }
+                if (cumulative) subscriptionAcks.frames.setLength(0);
+                subscriptionAcks.frames.append(frame);
+                emitters.add(emitter);
+                flushNow = emitters.size() >= maxMessages;
+                scheduleFlush = !flushNow && emitters.size() == 1;
+            }
+            if (flushNow) {
+                flush();
+            } else if (scheduleFlush) {
+                scheduler.scheduleDirect(this::flush, maxDelayMs, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * For an ACK covered by a cumulative one of the subscription, which is not written.
+     *
+     * @return completes with the batch of the covering ACK, or right away if it is not pending anymore
+     */
+    Completable join(@Nonnull String subscriptionId) {
+        return Completable.create(emitter -> {
+            boolean coverPending;
+            boolean flushNow = false;
+            synchronized (this) {
+                coverPending = pending.containsKey(subscriptionId);
+                if (coverPending) {
+                    // counts as an ack of the batch, the delay is scheduled by the covering one
+                    emitters.add(emitter);
+                    flushNow = emitters.size() >= maxMessages;
+                }
+            }
+            if (!coverPending) {
+                emitter.onComplete();
+            } else if (flushNow) {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Writes the pending ACKs, if any.
+     */
+    void flush() {
+        synchronized (this) {
+            if (emitters.isEmpty()) return;
+            StringBuilder frames = new StringBuilder();
+            for (Pending subscriptionAcks : pending.values()) frames.append(subscriptionAcks.frames);
+            List<CompletableEmitter> batch = emitters;
+            pending = new LinkedHashMap<>();
+            emitters = new ArrayList<>();
+
+            // subscribe under the lock, so that batches are queued in order
+            writer.write(frames.toString()).subscribe(() -> {
+                for (CompletableEmitter emitter : batch) emitter.onComplete();
+            }, throwable -> {
+                for (CompletableEmitter emitter : batch) emitter.tryOnError(throwable);
+            });
+        }
+    }
+
+    /**
+     * Drops the pending ACKs, their messages will be redelivered.
+     */
+    void clear(@Nonnull Throwable error) {
+        List<CompletableEmitter> dropped;
+        synchronized (this) {
+            dropped = emitters;
+            pending = new LinkedHashMap<>();
+            emitters = new ArrayList<>();
+        }
+        for (CompletableEmitter emitter : dropped) emitter.tryOnError(error);
+    }
+
+    private static final class Pending {
+        final StringBuilder frames = new StringBuilder();
+    }
+}
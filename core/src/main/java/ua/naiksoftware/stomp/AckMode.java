@@ -0,0 +1,34 @@
+package ua.naiksoftware.stomp;
+
+/**
+ * The {@code ack} header of a SUBSCRIBE, see
+ * <a href="https://stomp.github.io/stomp-specification-1.2.html#SUBSCRIBE_ack_Header">SUBSCRIBE ack Header</a>.
+ */
+public enum AckMode {
+    /**
+     * The server considers a message acknowledged as soon as it sends it.
+     */
+    AUTO("auto"),
+    /**
+     * Messages must be acknowledged with {@link StompClient#ack}; an ACK is cumulative,
+     * it acknowledges all previous messages of the subscription too.
+     */
+    CLIENT("client"),
+    /**
+     * Every message must be acknowledged with {@link StompClient#ack} on its own.
+     */
+    CLIENT_INDIVIDUAL("client-individual");
+
+    private final String value;
+
+    AckMode(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return value of the ack header
+     */
+    public String getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,84 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+
+/**
+ * How a {@link StompClient#topic} Flowable buffers messages for a slow consumer,
+ * or the {@link StompClient#withOutboundQueue outbound queue} holds messages sent while not connected.
+ * <p>
+ * {@link #UNBOUNDED} keeps every message, like {@link io.reactivex.BackpressureStrategy#BUFFER}.
+ * A bounded config applies its {@link Overflow} policy once the buffer holds {@code capacity}
+ * messages or {@code maxBytes} of payload.
+ */
+public final class BackpressureConfig {
+
+    public enum Overflow {
+        /**
+         * Evict the oldest buffered messages to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new message.
+         */
+        DROP_LATEST,
+        /**
+         * Replace the newest buffered message with the new one.
+         */
+        KEEP_LATEST,
+        /**
+         * Signal {@link io.reactivex.exceptions.MissingBackpressureException} after the buffered messages.
+         */
+        ERROR
+    }
+
+    public static final BackpressureConfig UNBOUNDED = new BackpressureConfig(Integer.MAX_VALUE, 0, Overflow.ERROR);
+
+    private final int capacity;
+    private final long maxBytes;
+    private final Overflow overflow;
+
+    private BackpressureConfig(int capacity, long maxBytes, Overflow overflow) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.overflow = overflow;
+    }
+
+    /**
+     * @param capacity max count of buffered messages
+     * @param overflow what to do when the buffer is full
+     */
+    public static BackpressureConfig bounded(int capacity, @Nonnull Overflow overflow) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        return new BackpressureConfig(capacity, 0, overflow);
+    }
+
+    /**
+     * @param maxBytes max total payload size of buffered messages, see {@link ua.naiksoftware.stomp.dto.StompMessage#getPayloadLength()}.
+     *                 0 for no limit
+     */
+    public BackpressureConfig withMaxBytes(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Max bytes must not be negative: " + maxBytes);
+        return new BackpressureConfig(capacity, maxBytes, overflow);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public boolean isUnbounded() {
+        return capacity == Integer.MAX_VALUE && maxBytes == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BackpressureConfig{capacity=" + capacity + ", maxBytes=" + maxBytes + ", overflow=" + overflow + '}';
+    }
+}
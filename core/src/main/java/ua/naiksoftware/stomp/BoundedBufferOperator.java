@@ -0,0 +1,251 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.FlowableOperator;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.exceptions.MissingBackpressureException;
+
+/**
+ * Buffers up to the {@link BackpressureConfig} limits, counting and resolving overflows
+ * with its {@link BackpressureConfig.Overflow} policy.
+ * Upstream is requested unbounded, it is expected to be a hot source.
+ */
+class BoundedBufferOperator<T> implements FlowableOperator<T, T> {
+
+    interface Sizer<T> {
+        long sizeOf(T item);
+    }
+
+    private final BackpressureConfig config;
+    private final Sizer<T> sizer;
+    @Nullable
+    private final AtomicLong overflowCounter;
+
+    BoundedBufferOperator(@Nonnull BackpressureConfig config, @Nonnull Sizer<T> sizer, @Nullable AtomicLong overflowCounter) {
+        this.config = config;
+        this.sizer = sizer;
+        this.overflowCounter = overflowCounter;
+    }
+
+    @Override
+    public Subscriber<? super T> apply(Subscriber<? super T> downstream) {
+        return new BufferSubscriber<>(downstream, config, sizer, overflowCounter);
+    }
+
+    static final class BufferSubscriber<T> implements FlowableSubscriber<T>, Subscription {
+
+        private final Subscriber<? super T> downstream;
+        private final int capacity;
+        private final long maxBytes;
+        private final BackpressureConfig.Overflow overflow;
+        private final Sizer<T> sizer;
+        @Nullable
+        private final AtomicLong overflowCounter;
+
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private long queuedBytes;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private Subscription upstream;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private Throwable error;
+
+        BufferSubscriber(Subscriber<? super T> downstream, BackpressureConfig config, Sizer<T> sizer,
+                         @Nullable AtomicLong overflowCounter) {
+            this.downstream = downstream;
+            this.capacity = config.getCapacity();
+            this.maxBytes = config.getMaxBytes();
+            this.overflow = config.getOverflow();
+            this.sizer = sizer;
+            this.overflowCounter = overflowCounter;
+        }
+
+        @Override
+        public void onSubscribe(@Nonnull Subscription s) {
+            upstream = s;
+            downstream.onSubscribe(this);
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (done) return;
+            long size = maxBytes > 0 ? sizer.sizeOf(item) : 0;
+            boolean failed = false;
+            synchronized (queue) {
+                if (isFull(size)) {
+                    if (overflowCounter != null) overflowCounter.incrementAndGet();
+                    switch (overflow) {
+                        case DROP_OLDEST:
+                            while (!queue.isEmpty() && isFull(size)) {
+                                queuedBytes -= sizeOf(queue.poll());
+                            }
+                            offer(item, size);
+                            break;
+                        case DROP_LATEST:
+                            break;
+                        case KEEP_LATEST:
+                            if (!queue.isEmpty()) queuedBytes -= sizeOf(queue.pollLast());
+                            offer(item, size);
+                            break;
+                        case ERROR:
+                            failed = true;
+                            break;
+                    }
+                } else {
+                    offer(item, size);
+                }
+            }
+            if (failed) {
+                upstream.cancel();
+                onError(new MissingBackpressureException("Buffer is full: " + capacity + " messages, " + maxBytes + " bytes"));
+                return;
+            }
+            drain();
+        }
+
+        private boolean isFull(long size) {
+            // a single message over maxBytes still goes through an empty buffer
+            return queue.size() >= capacity || (maxBytes > 0 && !queue.isEmpty() && queuedBytes + size > maxBytes);
+        }
+
+        private void offer(T item, long size) {
+            queue.offer(item);
+            queuedBytes += size;
+        }
+
+        private long sizeOf(T item) {
+            return maxBytes > 0 ? sizer.sizeOf(item) : 0;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) return;
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) return;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) return;
+            addRequested(n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            upstream.cancel();
+            if (wip.getAndIncrement() == 0) clear();
+        }
+
+        private void clear() {
+            synchronized (queue) {
+                queue.clear();
+                queuedBytes = 0;
+            }
+        }
+
+        private T poll() {
+            synchronized (queue) {
+                T item = queue.poll();
+                if (item != null) queuedBytes -= sizeOf(item);
+                return item;
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+
+            int missed = 1;
+            for (; ; ) {
+                long r = requested.get();
+                long e = 0;
+
+                while (e != r) {
+                    if (cancelled) {
+                        clear();
+                        return;
+                    }
+                    boolean d = done;
+                    T item = poll();
+                    if (d && item == null) {
+                        terminate();
+                        return;
+                    }
+                    if (item == null) break;
+                    downstream.onNext(item);
+                    e++;
+                }
+
+                if (e == r) {
+                    if (cancelled) {
+                        clear();
+                        return;
+                    }
+                    boolean empty;
+                    synchronized (queue) {
+                        empty = queue.isEmpty();
+                    }
+                    if (done && empty) {
+                        terminate();
+                        return;
+                    }
+                }
+
+                if (e != 0) produced(e);
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) break;
+            }
+        }
+
+        private void addRequested(long n) {
+            for (; ; ) {
+                long current = requested.get();
+                if (current == Long.MAX_VALUE) return;
+                long updated = current + n;
+                if (updated < 0) updated = Long.MAX_VALUE;
+                if (requested.compareAndSet(current, updated)) return;
+            }
+        }
+
+        private void produced(long n) {
+            for (; ; ) {
+                long current = requested.get();
+                if (current == Long.MAX_VALUE) return;
+                if (requested.compareAndSet(current, current - n)) return;
+            }
+        }
+
+        private void terminate() {
+            Throwable t = error;
+            if (t != null) {
+                downstream.onError(t);
+            } else {
+                downstream.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ua.naiksoftware.stomp;
+
+/**
+ * Time source of the heart-beat engine, replaceable in tests.
+ */
+public interface Clock {
+
+    /**
+     * Monotonic, not related to the wall-clock time.
+     */
+    Clock SYSTEM = () -> System.nanoTime() / 1_000_000;
+
+    /**
+     * @return current time in milliseconds
+     */
+    long millis();
+}
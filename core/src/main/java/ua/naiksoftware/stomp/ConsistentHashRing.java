@@ -0,0 +1,80 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.reactivex.functions.Predicate;
+
+/**
+ * Maps keys to members so that adding or skipping a member moves only the keys of that member.
+ * Every member owns {@code virtualNodes} points of the ring, a key belongs to the next point clockwise.
+ * Immutable, so lookups need no locking.
+ */
+class ConsistentHashRing<T> {
+
+    private final TreeMap<Integer, T> ring = new TreeMap<>();
+    private final List<T> members;
+
+    ConsistentHashRing(@Nonnull List<T> members, int virtualNodes) {
+        if (members.isEmpty()) throw new IllegalArgumentException("Ring must have members");
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+        for (int i = 0; i < members.size(); i++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // on collision the first member keeps the point
+                Integer point = hash("member-" + i + "#" + node);
+                if (!ring.containsKey(point)) ring.put(point, members.get(i));
+            }
+        }
+    }
+
+    List<T> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return owner of the key
+     */
+    T get(@Nonnull String key) {
+        Map.Entry<Integer, T> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * @return first member clockwise from the key that passes the filter, the owner if none does
+     */
+    T get(@Nonnull String key, @Nonnull Predicate<T> filter) throws Exception {
+        int point = hash(key);
+        T owner = null;
+        for (Map.Entry<Integer, T> entry : ring.tailMap(point, true).entrySet()) {
+            if (owner == null) owner = entry.getValue();
+            if (filter.test(entry.getValue())) return entry.getValue();
+        }
+        for (Map.Entry<Integer, T> entry : ring.headMap(point, false).entrySet()) {
+            if (owner == null) owner = entry.getValue();
+            if (filter.test(entry.getValue())) return entry.getValue();
+        }
+        return owner;
+    }
+
+    /**
+     * FNV-1a with the murmur3 finalizer, {@link String#hashCode()} spreads similar keys poorly.
+     */
+    static int hash(@Nonnull String key) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
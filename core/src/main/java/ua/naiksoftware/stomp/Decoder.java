@@ -0,0 +1,36 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * Turns a received message into a value for {@link StompClient#topicAs(String, Decoder)}.
+ * <p>
+ * Read the body from {@link StompMessage#getPayloadChars()} or {@link StompMessage#getPayloadBytes()}
+ * when the parser accepts them, e.g. through a {@link java.io.Reader}: unlike
+ * {@link StompMessage#getPayload()} they do not copy the body of a parsed frame into a new String.
+ */
+public interface Decoder<T> {
+
+    /**
+     * Called on the decoding scheduler, possibly for several messages at once.
+     *
+     * @return the decoded value, not null
+     * @throws Exception fails the typed topic
+     */
+    @Nonnull
+    T decode(@Nonnull StompMessage message) throws Exception;
+
+    /**
+     * Decoders for {@link StompClient#topicAs(String, Class)}, e.g. backed by a JSON library.
+     */
+    interface Factory {
+        /**
+         * @return null if the type is not supported
+         */
+        @Nullable
+        <T> Decoder<T> create(@Nonnull Class<T> type);
+    }
+}
@@ -0,0 +1,52 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * Decoders of the types every client supports without a {@link Decoder.Factory}.
+ * An empty body decodes to an empty value.
+ */
+final class Decoders {
+
+    private static final Decoder<String> STRING = message -> {
+        String payload = message.getPayload();
+        return payload != null ? payload : "";
+    };
+
+    private static final Decoder<CharSequence> CHARS = message -> {
+        CharSequence payload = message.getPayloadChars();
+        return payload != null ? payload : "";
+    };
+
+    private static final Decoder<ByteBuffer> BYTE_BUFFER = message -> {
+        ByteBuffer payload = message.getPayloadBytes();
+        return payload != null ? payload : ByteBuffer.allocate(0);
+    };
+
+    private static final Decoder<byte[]> BYTES = message -> {
+        ByteBuffer payload = message.getPayloadBytes();
+        if (payload == null) return new byte[0];
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return bytes;
+    };
+
+    private Decoders() {
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    static <T> Decoder<T> forClass(@Nonnull Class<T> type) {
+        if (type == String.class) return (Decoder<T>) STRING;
+        if (type == CharSequence.class) return (Decoder<T>) CHARS;
+        if (type == ByteBuffer.class) return (Decoder<T>) BYTE_BUFFER;
+        if (type == byte[].class) return (Decoder<T>) BYTES;
+        if (type == StompMessage.class) return message -> (T) message;
+        return null;
+    }
+}
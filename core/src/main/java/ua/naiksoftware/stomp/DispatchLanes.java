@@ -0,0 +1,42 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+
+import io.reactivex.Scheduler;
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * Delivers routed messages on serial lanes instead of the socket thread. A subscription always
+ * goes through the same lane, so its messages keep their order, while subscriptions on different
+ * lanes are delivered in parallel.
+ */
+final class DispatchLanes {
+
+    private final Scheduler.Worker[] lanes;
+
+    DispatchLanes(@Nonnull Scheduler scheduler, int laneCount) {
+        if (laneCount <= 0) throw new IllegalArgumentException("laneCount must be positive: " + laneCount);
+        lanes = new Scheduler.Worker[laneCount];
+        // a worker runs its tasks one by one, in order
+        for (int i = 0; i < laneCount; i++) lanes[i] = scheduler.createWorker();
+    }
+
+    void deliver(@Nonnull Subscription subscription, @Nonnull StompMessage message) {
+        lane(subscription).schedule(() -> subscription.deliver(message));
+    }
+
+    /**
+     * Completes the subscription after the messages already queued for it.
+     */
+    void complete(@Nonnull Subscription subscription) {
+        lane(subscription).schedule(subscription::complete);
+    }
+
+    void dispose() {
+        for (Scheduler.Worker lane : lanes) lane.dispose();
+    }
+
+    private Scheduler.Worker lane(Subscription subscription) {
+        return lanes[(subscription.getId().hashCode() & Integer.MAX_VALUE) % lanes.length];
+    }
+}
@@ -0,0 +1,211 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import ua.naiksoftware.stomp.dto.StompCommand;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+import ua.naiksoftware.stomp.log.StompLog;
+
+/**
+ * Heart-beating of one connection, see <a href="https://stomp.github.io/stomp-specification-1.2.html#Heart-beating">Heart-beating</a>.
+ * <p>
+ * Frames only update the last-activity timestamps; one timeout per direction on a {@link HeartBeatTimer}
+ * checks them once per heart-beat period, so there is no per-frame scheduling.
+ */
+public class HeartBeatTask {
+
+    private static final String TAG = HeartBeatTask.class.getSimpleName();
+
+    private HeartBeatTimer timer;
+
+    private volatile int serverHeartbeat = 0;
+    private volatile int clientHeartbeat = 0;
+
+    private int serverHeartbeatNew = 0;
+    private int clientHeartbeatNew = 0;
+
+    private volatile long lastServerHeartBeat = 0;
+    private volatile long lastClientSend = 0;
+
+    @Nullable
+    private volatile HeartBeatTimer.Timeout clientSendHeartBeatTask;
+    @Nullable
+    private volatile HeartBeatTimer.Timeout serverCheckHeartBeatTask;
+
+    private FailedListener failedListener;
+    private SendCallback sendCallback;
+
+    public HeartBeatTask(SendCallback sendCallback, @Nullable FailedListener failedListener) {
+        this(sendCallback, failedListener, HeartBeatTimer.shared());
+    }
+
+    public HeartBeatTask(SendCallback sendCallback, @Nullable FailedListener failedListener, @Nonnull HeartBeatTimer timer) {
+        this.failedListener = failedListener;
+        this.sendCallback = sendCallback;
+        this.timer = timer;
+    }
+
+    /**
+     * Takes effect on the next handshake.
+     */
+    public void setTimer(@Nonnull HeartBeatTimer timer) {
+        this.timer = timer;
+    }
+
+    public void setServerHeartbeat(int serverHeartbeat) {
+        this.serverHeartbeatNew = serverHeartbeat;
+    }
+
+    public void setClientHeartbeat(int clientHeartbeat) {
+        this.clientHeartbeatNew = clientHeartbeat;
+    }
+
+    public int getServerHeartbeat() {
+        return serverHeartbeatNew;
+    }
+
+    public int getClientHeartbeat() {
+        return clientHeartbeatNew;
+    }
+
+    /**
+     * Any received frame proves the server is alive.
+     *
+     * @return false for a heart-beat, which is not a STOMP frame
+     */
+    public boolean consumeHeartBeat(StompMessage message) {
+        if (serverHeartbeat > 0) {
+            lastServerHeartBeat = timer.getClock().millis();
+        }
+        switch (message.getStompCommand()) {
+            case StompCommand.CONNECTED:
+                heartBeatHandshake(message.findHeader(StompHeader.HEART_BEAT));
+                break;
+
+            case StompCommand.UNKNOWN:
+                if ("\n".equals(message.getPayload())) {
+                    StompLog.d(TAG, "<<< PONG");
+                    return false;
+                }
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Any sent frame works as a heart-beat, so the next one is postponed.
+     */
+    public void onFrameSent() {
+        if (clientHeartbeat > 0) {
+            lastClientSend = timer.getClock().millis();
+        }
+    }
+
+    public void shutdown() {
+        HeartBeatTimer.Timeout task = clientSendHeartBeatTask;
+        if (task != null) {
+            task.cancel();
+            clientSendHeartBeatTask = null;
+        }
+
+        task = serverCheckHeartBeatTask;
+        if (task != null) {
+            task.cancel();
+            serverCheckHeartBeatTask = null;
+        }
+
+        serverHeartbeat = 0;
+        clientHeartbeat = 0;
+        lastServerHeartBeat = 0;
+        lastClientSend = 0;
+    }
+
+    /**
+     * Analise heart-beat sent from server (if any), to adjust the frequency.
+     * Startup the heart-beat logic.
+     */
+    private void heartBeatHandshake(final String heartBeatHeader) {
+        if (heartBeatHeader != null) {
+            // The heart-beat header is OPTIONAL
+            final String[] heartbeats = heartBeatHeader.split(",");
+            if (clientHeartbeatNew > 0) {
+                //there will be heart-beats every MAX(<cx>,<sy>) milliseconds
+                clientHeartbeat = Math.max(clientHeartbeatNew, Integer.parseInt(heartbeats[1]));
+            }
+            if (serverHeartbeatNew > 0) {
+                //there will be heart-beats every MAX(<cx>,<sy>) milliseconds
+                serverHeartbeat = Math.max(serverHeartbeatNew, Integer.parseInt(heartbeats[0]));
+            }
+        }
+        final long now = timer.getClock().millis();
+        if (clientHeartbeat > 0) {
+            //client MUST/WANT send heart-beat
+            if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Client will send heart-beat every " + clientHeartbeat + " ms");
+            lastClientSend = now;
+            scheduleClientHeartBeat(clientHeartbeat);
+        }
+        if (serverHeartbeat > 0) {
+            if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Client will listen to server heart-beat every " + serverHeartbeat + " ms");
+            // initialize the server heartbeat
+            lastServerHeartBeat = now;
+            //client WANT to listen to server heart-beat
+            scheduleServerHeartBeatCheck();
+        }
+    }
+
+    private void scheduleServerHeartBeatCheck() {
+        if (serverHeartbeat > 0) {
+            serverCheckHeartBeatTask = timer.schedule(this::checkServerHeartBeat, serverHeartbeat);
+        }
+    }
+
+    private void checkServerHeartBeat() {
+        if (serverHeartbeat > 0) {
+            final long now = timer.getClock().millis();
+            //use a forgiving boundary as some heart beats can be delayed or lost.
+            final long boundary = now - (3 * serverHeartbeat);
+            if (lastServerHeartBeat < boundary) {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "It's a sad day ;( Server didn't send heart-beat on time. Last received at '" + lastServerHeartBeat + "' and now is '" + now + "'");
+                serverCheckHeartBeatTask = null;
+                if (failedListener != null) {
+                    failedListener.onServerHeartBeatFailed();
+                }
+            } else {
+                scheduleServerHeartBeatCheck();
+            }
+        }
+    }
+
+    private void scheduleClientHeartBeat(long delayMs) {
+        if (clientHeartbeat > 0) {
+            clientSendHeartBeatTask = timer.schedule(this::checkClientHeartBeat, delayMs);
+        }
+    }
+
+    /**
+     * Send the raw heart-beat to the server if nothing was sent for the heart-beat period.
+     */
+    private void checkClientHeartBeat() {
+        if (clientHeartbeat > 0) {
+            final long idle = timer.getClock().millis() - lastClientSend;
+            if (idle >= clientHeartbeat) {
+                sendCallback.sendClientHeartBeat("\r\n");
+                StompLog.d(TAG, "PING >>>");
+                lastClientSend = timer.getClock().millis();
+                scheduleClientHeartBeat(clientHeartbeat);
+            } else {
+                scheduleClientHeartBeat(clientHeartbeat - idle);
+            }
+        }
+    }
+
+    public interface FailedListener {
+        void onServerHeartBeatFailed();
+    }
+
+    public interface SendCallback {
+        void sendClientHeartBeat(String pingMessage);
+    }
+}
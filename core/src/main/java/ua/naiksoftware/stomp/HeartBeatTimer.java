@@ -0,0 +1,220 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import ua.naiksoftware.stomp.log.StompLog;
+
+/**
+ * Hashed timer wheel for heart-beat timeouts, meant to be shared by many {@link StompClient}s:
+ * one periodic tick serves all of them, and the tick only runs while some timeout is pending.
+ * <p>
+ * A timeout fires up to one tick late, never early. Timeouts run on the tick thread, so they must be short.
+ */
+public final class HeartBeatTimer {
+
+    private static final String TAG = HeartBeatTimer.class.getSimpleName();
+
+    public static final long DEFAULT_TICK_MS = 50;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final HeartBeatTimer SHARED = new HeartBeatTimer(Clock.SYSTEM, DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE, Schedulers.io());
+
+    private final Clock clock;
+    private final long tickMs;
+    private final Bucket[] wheel;
+    private final int mask;
+    @Nullable
+    private final Scheduler scheduler;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    // guarded by this
+    private long pending;
+    // guarded by this
+    @Nullable
+    private Disposable ticking;
+
+    // accessed by the tick only, which is serialized by tickLock
+    private final Object tickLock = new Object();
+    private final long startMs;
+    private long tick;
+    private int inWheel;
+
+    /**
+     * @param tickMs    wheel resolution
+     * @param wheelSize count of buckets, rounded up to a power of two
+     * @param scheduler runs the periodic tick; null to call {@link #tick()} manually, as tests do
+     */
+    public HeartBeatTimer(@Nonnull Clock clock, long tickMs, int wheelSize, @Nullable Scheduler scheduler) {
+        if (tickMs <= 0) throw new IllegalArgumentException("Tick must be positive: " + tickMs);
+        if (wheelSize <= 0) throw new IllegalArgumentException("Wheel size must be positive: " + wheelSize);
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) size <<= 1;
+        this.clock = clock;
+        this.tickMs = tickMs;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+        this.mask = size - 1;
+        this.scheduler = scheduler;
+        this.startMs = clock.millis();
+    }
+
+    /**
+     * Instance used by clients unless {@link StompClient#withHeartBeatTimer} sets another one.
+     */
+    public static HeartBeatTimer shared() {
+        return SHARED;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return cancellable handle
+     */
+    Timeout schedule(@Nonnull Runnable task, long delayMs) {
+        Timeout timeout = new Timeout(task, clock.millis() + Math.max(0, delayMs));
+        added.offer(timeout);
+        synchronized (this) {
+            pending++;
+            if (ticking == null && scheduler != null) {
+                ticking = scheduler.schedulePeriodicallyDirect(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Runs the timeouts that are due by now and, if none is pending anymore, stops ticking.
+     */
+    void tick() {
+        synchronized (tickLock) {
+            long now = clock.millis();
+            if (inWheel == 0) {
+                // nothing to expire in between, skip the idle time at once,
+                // but leave the last elapsed tick to the loop for the just added timeouts
+                tick = Math.max(tick, (now - startMs) / tickMs - 1);
+            }
+            transferAdded();
+            // catch up with the clock, the tick may run late
+            while (startMs + (tick + 1) * tickMs <= now) {
+                tick++;
+                expire(wheel[(int) (tick & mask)], now);
+            }
+        }
+        synchronized (this) {
+            if (pending == 0 && ticking != null) {
+                ticking.dispose();
+                ticking = null;
+            }
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) {
+                release();
+                continue;
+            }
+            // ticks from the wheel start, rounded up so that the timeout never fires early
+            long ticks = Math.max(tick + 1, (timeout.deadline - startMs + tickMs - 1) / tickMs);
+            timeout.rounds = (ticks - tick - 1) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+            inWheel++;
+        }
+    }
+
+    private void expire(Bucket bucket, long now) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.cancelled) {
+                bucket.remove(timeout);
+                inWheel--;
+                release();
+            } else if (timeout.rounds <= 0 && timeout.deadline <= now) {
+                bucket.remove(timeout);
+                inWheel--;
+                release();
+                try {
+                    timeout.task.run();
+                } catch (Throwable throwable) {
+                    StompLog.e(TAG, "Heart-beat task failed", throwable);
+                }
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private synchronized void release() {
+        pending--;
+    }
+
+    static final class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled;
+
+        // accessed by the tick only
+        private long rounds;
+        private Timeout prev;
+        private Timeout next;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * The timeout is dropped from its bucket on a later tick.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.exceptions.MissingBackpressureException;
+import ua.naiksoftware.stomp.dto.StompFrameEncoder;
+
+/**
+ * FIFO of frames sent while the client is not connected. Frames go straight to the writer while
+ * it is open and the queue is empty; {@link #open()} flushes the queue, consecutive text frames
+ * as one write, before any later frame.
+ * <p>
+ * Streamed uploads, see {@link #writeIfOpen(Callable)}, hold the socket until they are written. Meanwhile
+ * later frames wait in the queue, so their senders, such as a socket reader thread that acks, don't block.
+ * The queue monitor is never held across an upload.
+ * <p>
+ * Limits and overflow policy come from a {@link BackpressureConfig}: dropped frames fail their send
+ * with {@link MissingBackpressureException}, and with {@link BackpressureConfig.Overflow#ERROR} the new frame
+ * fails, as with {@link BackpressureConfig.Overflow#DROP_LATEST}.
+ */
+class OutboundQueue {
+
+    interface Writer {
+        Completable write(String frames);
+
+        Completable write(ByteBuffer frame);
+    }
+
+    private final Writer writer;
+    private final Clock clock;
+    private final OutboundQueueMetrics metrics;
+    private volatile BackpressureConfig config;
+
+    // guarded by this
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean open;
+    // an upload is being written, the next frames are queued behind it
+    private boolean streaming;
+
+    OutboundQueue(@Nonnull Writer writer, @Nonnull Clock clock, @Nonnull BackpressureConfig config) {
+        this.writer = writer;
+        this.clock = clock;
+        this.config = config;
+        this.metrics = new OutboundQueueMetrics(this);
+    }
+
+    void setConfig(@Nonnull BackpressureConfig config) {
+        this.config = config;
+    }
+
+    OutboundQueueMetrics getMetrics() {
+        return metrics;
+    }
+
+    Completable enqueue(@Nonnull String frame) {
+        return Completable.create(emitter -> offer(new Entry(frame, null, -1, emitter, clock.millis())));
+    }
+
+    Completable enqueue(@Nonnull ByteBuffer frame) {
+        return Completable.create(emitter -> offer(new Entry(null, frame, frame.remaining(), emitter, clock.millis())));
+    }
+
+    /**
+     * Like {@link #enqueue(ByteBuffer)} for a frame in a reused buffer, only valid until the returned
+     * Completable is subscribed: it is copied if it has to wait in the queue. The writer must write or
+     * copy it before returning, as the providers do.
+     */
+    Completable enqueueTransient(@Nonnull ByteBuffer frame) {
+        return Completable.create(emitter -> {
+            Entry entry = new Entry(null, frame, frame.remaining(), emitter, clock.millis());
+            entry.copyIfQueued = true;
+            offer(entry);
+        });
+    }
+
+    /**
+     * Subscribes the write of a frame that can't wait for a connection, such as a streamed body, after
+     * the frames and uploads queued before it. Fails if the queue is not open, and when the connection
+     * is lost before the write starts. The write must not go through this queue.
+     */
+    Completable writeIfOpen(@Nonnull Callable<Completable> write) {
+        return Completable.create(emitter -> {
+            Entry entry = new Entry(write, emitter, clock.millis());
+            if (offerStream(entry)) stream(entry);
+        });
+    }
+
+    /**
+     * @return true if the upload may start right away
+     */
+    private synchronized boolean offerStream(Entry entry) {
+        if (!open) {
+            entry.emitter.tryOnError(notConnected());
+            return false;
+        }
+        if (!streaming && queue.isEmpty()) {
+            streaming = true;
+            return true;
+        }
+        queue.offer(entry);
+        entry.queued = true;
+        entry.emitter.setCancellable(() -> remove(entry));
+        return false;
+    }
+
+    /**
+     * Writes an upload without holding the monitor, then the frames queued during it.
+     */
+    private void stream(Entry entry) {
+        if (entry.emitter.isDisposed()) {
+            streamed();
+            return;
+        }
+        Completable write;
+        try {
+            write = entry.stream.call();
+        } catch (Exception e) {
+            write = Completable.error(e);
+        }
+        write.subscribe(() -> {
+            entry.emitter.onComplete();
+            streamed();
+        }, throwable -> {
+            entry.emitter.tryOnError(throwable);
+            streamed();
+        });
+    }
+
+    private void streamed() {
+        Entry next;
+        synchronized (this) {
+            streaming = false;
+            next = open ? flush() : null;
+        }
+        if (next != null) stream(next);
+    }
+
+    private synchronized void offer(Entry entry) {
+        if (open && !streaming && queue.isEmpty()) {
+            write(entry.text != null ? writer.write(entry.text) : writer.write(entry.bytes), entry.emitter);
+            return;
+        }
+
+        // counted only here, frames written right away are not measured
+        if (entry.text != null) entry.size = StompFrameEncoder.utf8Length(entry.text);
+        BackpressureConfig config = this.config;
+        if (isFull(config, entry.size)) {
+            metrics.onOverflow();
+            switch (config.getOverflow()) {
+                case DROP_OLDEST:
+                    while (!queue.isEmpty() && isFull(config, entry.size)) {
+                        drop(queue.poll());
+                    }
+                    break;
+                case KEEP_LATEST:
+                    if (!queue.isEmpty()) drop(queue.pollLast());
+                    break;
+                case DROP_LATEST:
+                case ERROR:
+                    entry.emitter.tryOnError(overflow(config));
+                    return;
+            }
+        }
+        Entry queued = entry.copyIfQueued ? entry.copy() : entry;
+        queue.offer(queued);
+        queued.queued = true;
+        queuedBytes += queued.size;
+        queued.emitter.setCancellable(() -> remove(queued));
+    }
+
+    private boolean isFull(BackpressureConfig config, long size) {
+        // a single frame over maxBytes still goes through an empty queue
+        return queue.size() >= config.getCapacity()
+                || (config.getMaxBytes() > 0 && !queue.isEmpty() && queuedBytes + size > config.getMaxBytes());
+    }
+
+    private void drop(Entry entry) {
+        entry.queued = false;
+        queuedBytes -= entry.size;
+        entry.emitter.tryOnError(overflow(config));
+    }
+
+    private static MissingBackpressureException overflow(BackpressureConfig config) {
+        return new MissingBackpressureException("Outbound queue is full: " + config.getCapacity() + " messages, "
+                + config.getMaxBytes() + " bytes");
+    }
+
+    private synchronized void remove(Entry entry) {
+        // the emitter removes its entry on completion too, when it is not queued anymore
+        if (entry.queued && queue.remove(entry)) {
+            entry.queued = false;
+            queuedBytes -= entry.size;
+        }
+    }
+
+    /**
+     * Flushes the queued frames and lets the next ones through.
+     */
+    void open() {
+        Entry next;
+        synchronized (this) {
+            open = true;
+            // an upload of the previous connection is still failing, it flushes when done
+            next = streaming ? null : flush();
+        }
+        if (next != null) stream(next);
+    }
+
+    /**
+     * Writes the queued frames up to the first upload.
+     *
+     * @return the upload, to be started without the monitor, or null if the queue is empty
+     */
+    private Entry flush() {
+        long now = clock.millis();
+        StringBuilder frames = new StringBuilder();
+        List<CompletableEmitter> emitters = new ArrayList<>();
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.queued = false;
+            queuedBytes -= entry.size;
+            metrics.onDequeued(now - entry.enqueuedAt);
+            if (entry.stream != null) {
+                flushText(frames, emitters);
+                streaming = true;
+                return entry;
+            } else if (entry.text != null) {
+                frames.append(entry.text);
+                emitters.add(entry.emitter);
+            } else {
+                flushText(frames, emitters);
+                write(writer.write(entry.bytes), entry.emitter);
+            }
+        }
+        flushText(frames, emitters);
+        return null;
+    }
+
+    /**
+     * Queues the next frames and fails the queued uploads, they can't wait for the next connection.
+     */
+    synchronized void close() {
+        open = false;
+        Iterator<Entry> entries = queue.iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.stream != null) {
+                entries.remove();
+                entry.queued = false;
+                entry.emitter.tryOnError(notConnected());
+            }
+        }
+    }
+
+    private static IllegalStateException notConnected() {
+        return new IllegalStateException("Not connected, the frame can't be queued");
+    }
+
+    /**
+     * Fails the queued frames.
+     */
+    synchronized void clear(@Nonnull Throwable error) {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.queued = false;
+            entry.emitter.tryOnError(error);
+        }
+        queuedBytes = 0;
+    }
+
+    synchronized int depth() {
+        return queue.size();
+    }
+
+    synchronized long bytes() {
+        return queuedBytes;
+    }
+
+    private void flushText(StringBuilder frames, List<CompletableEmitter> emitters) {
+        if (emitters.isEmpty()) return;
+        List<CompletableEmitter> batch = new ArrayList<>(emitters);
+        writer.write(frames.toString()).subscribe(() -> {
+            for (CompletableEmitter emitter : batch) emitter.onComplete();
+        }, throwable -> {
+            for (CompletableEmitter emitter : batch) emitter.tryOnError(throwable);
+        });
+        frames.setLength(0);
+        emitters.clear();
+    }
+
+    private static void write(Completable write, CompletableEmitter emitter) {
+        write.subscribe(emitter::onComplete, emitter::tryOnError);
+    }
+
+    private static final class Entry {
+
+        @Nullable
+        final String text;
+        @Nullable
+        final ByteBuffer bytes;
+        @Nullable
+        final Callable<Completable> stream;
+        // text frames are measured when queued
+        long size;
+        final CompletableEmitter emitter;
+        final long enqueuedAt;
+        // guarded by the queue
+        boolean queued;
+        boolean copyIfQueued;
+
+        Entry(@Nullable String text, @Nullable ByteBuffer bytes, long size, CompletableEmitter emitter, long enqueuedAt) {
+            this.text = text;
+            this.bytes = bytes;
+            this.stream = null;
+            this.size = size;
+            this.emitter = emitter;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        Entry(@Nonnull Callable<Completable> stream, CompletableEmitter emitter, long enqueuedAt) {
+            this.text = null;
+            this.bytes = null;
+            this.stream = stream;
+            this.emitter = emitter;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        Entry copy() {
+            ByteBuffer copy = ByteBuffer.allocate(bytes.remaining());
+            copy.put(bytes.duplicate());
+            copy.flip();
+            return new Entry(text, copy, size, emitter, enqueuedAt);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ua.naiksoftware.stomp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of the {@link StompClient} outbound queue, which holds messages sent while not connected.
+ */
+public final class OutboundQueueMetrics {
+
+    private final OutboundQueue queue;
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong dequeued = new AtomicLong();
+    private final AtomicLong totalTimeInQueueMs = new AtomicLong();
+    private volatile long maxTimeInQueueMs;
+
+    OutboundQueueMetrics(OutboundQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * @return count of queued messages
+     */
+    public int getDepth() {
+        return queue.depth();
+    }
+
+    /**
+     * @return size of queued messages in bytes, text frames counted as UTF-8
+     */
+    public long getBytes() {
+        return queue.bytes();
+    }
+
+    /**
+     * @return how many times the queue overflowed
+     */
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+
+    /**
+     * @return count of messages that were queued and then sent
+     */
+    public long getDequeuedCount() {
+        return dequeued.get();
+    }
+
+    public long getTotalTimeInQueueMs() {
+        return totalTimeInQueueMs.get();
+    }
+
+    public long getMaxTimeInQueueMs() {
+        return maxTimeInQueueMs;
+    }
+
+    void onOverflow() {
+        overflows.incrementAndGet();
+    }
+
+    // called under the queue lock
+    void onDequeued(long timeInQueueMs) {
+        dequeued.incrementAndGet();
+        totalTimeInQueueMs.addAndGet(timeInQueueMs);
+        if (timeInQueueMs > maxTimeInQueueMs) maxTimeInQueueMs = timeInQueueMs;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboundQueueMetrics{depth=" + getDepth() + ", bytes=" + getBytes() + ", overflows=" + getOverflowCount()
+                + ", dequeued=" + getDequeuedCount() + ", maxTimeInQueueMs=" + maxTimeInQueueMs + '}';
+    }
+}
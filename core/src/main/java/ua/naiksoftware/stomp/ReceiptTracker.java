@@ -0,0 +1,162 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+
+/**
+ * Correlates RECEIPT frames with the sends that asked for them. At most {@code maxInFlight} sends
+ * wait for their receipt, the next ones are written as receipts arrive.
+ */
+class ReceiptTracker {
+
+    interface Writer {
+        /**
+         * @param receiptId value of the receipt header to add to the frame
+         */
+        Completable write(String receiptId);
+    }
+
+    private final int maxInFlight;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // guarded by this
+    private final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+    // guarded by this
+    private int permits;
+
+    ReceiptTracker(int maxInFlight) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.permits = maxInFlight;
+    }
+
+    /**
+     * @return completes on the RECEIPT of the written frame
+     */
+    Completable send(@Nonnull Writer writer) {
+        return Completable.create(emitter -> {
+            Pending pending = new Pending(writer, emitter);
+            boolean writeNow;
+            synchronized (this) {
+                writeNow = permits > 0;
+                if (writeNow) {
+                    permits--;
+                } else {
+                    waiting.add(pending);
+                }
+            }
+            emitter.setCancellable(() -> cancel(pending));
+            if (writeNow) write(pending);
+        });
+    }
+
+    private void write(Pending pending) {
+        String receiptId = "receipt-" + nextId.incrementAndGet();
+        pending.receiptId = receiptId;
+        inFlight.put(receiptId, new InFlight(pending.emitter, System.nanoTime()));
+        pending.writer.write(receiptId).subscribe(() -> {
+        }, throwable -> fail(receiptId, throwable));
+    }
+
+    void onReceipt(@Nullable String receiptId) {
+        InFlight receipted = receiptId != null ? inFlight.remove(receiptId) : null;
+        if (receipted == null) return;
+        latency.record((System.nanoTime() - receipted.sentNanos) / 1000);
+        release();
+        receipted.emitter.onComplete();
+    }
+
+    /**
+     * Fails the send of the receipt id, on an ERROR frame or a failed write.
+     */
+    void fail(@Nullable String receiptId, @Nonnull Throwable error) {
+        InFlight failed = receiptId != null ? inFlight.remove(receiptId) : null;
+        if (failed == null) return;
+        release();
+        failed.emitter.tryOnError(error);
+    }
+
+    /**
+     * Fails the sends waiting for a receipt, which will not come on another connection.
+     * Sends waiting for the window stay queued.
+     */
+    void failInFlight(@Nonnull Throwable error) {
+        for (String receiptId : new ArrayList<>(inFlight.keySet())) fail(receiptId, error);
+    }
+
+    /**
+     * Fails all sends, in flight and waiting for the window.
+     */
+    void clear(@Nonnull Throwable error) {
+        ArrayList<Pending> dropped;
+        synchronized (this) {
+            dropped = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        for (Pending pending : dropped) pending.emitter.tryOnError(error);
+        failInFlight(error);
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    private void cancel(Pending pending) {
+        synchronized (this) {
+            if (waiting.remove(pending)) return;
+        }
+        String receiptId = pending.receiptId;
+        if (receiptId != null && inFlight.remove(receiptId) != null) release();
+    }
+
+    private void release() {
+        Pending next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                permits++;
+                return;
+            }
+        }
+        write(next);
+    }
+
+    private static final class Pending {
+        final Writer writer;
+        final CompletableEmitter emitter;
+        volatile String receiptId;
+
+        Pending(Writer writer, CompletableEmitter emitter) {
+            this.writer = writer;
+            this.emitter = emitter;
+        }
+    }
+
+    private static final class InFlight {
+        final CompletableEmitter emitter;
+        final long sentNanos;
+
+        InFlight(CompletableEmitter emitter, long sentNanos) {
+            this.emitter = emitter;
+            this.sentNanos = sentNanos;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ua.naiksoftware.stomp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What {@link StompClient#withAutoReconnect} costs: how long connections were down and how many sends
+ * were held back meanwhile. A gap lasts from the connection loss to the CONNECTED frame of the reconnect.
+ * <p>
+ * Inbound messages lost during a gap can't be counted on the client side, as STOMP has no sequence numbers.
+ */
+public final class ReconnectMetrics {
+
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong totalRecoveryTimeMs = new AtomicLong();
+    private final AtomicLong sendsDuringGaps = new AtomicLong();
+    private volatile long lastRecoveryTimeMs;
+    private volatile long maxRecoveryTimeMs;
+    private volatile long sendsDuringLastGap;
+
+    // guarded by this, written by the client only
+    private long gapSends;
+
+    ReconnectMetrics() {
+    }
+
+    /**
+     * @return count of completed reconnects
+     */
+    public long getReconnectCount() {
+        return reconnects.get();
+    }
+
+    /**
+     * @return count of connection attempts, successful or not
+     */
+    public long getAttemptCount() {
+        return attempts.get();
+    }
+
+    public long getLastRecoveryTimeMs() {
+        return lastRecoveryTimeMs;
+    }
+
+    public long getMaxRecoveryTimeMs() {
+        return maxRecoveryTimeMs;
+    }
+
+    public long getTotalRecoveryTimeMs() {
+        return totalRecoveryTimeMs.get();
+    }
+
+    /**
+     * @return count of messages sent during the last gap, they were delayed until the reconnect
+     */
+    public long getSendsDuringLastGap() {
+        return sendsDuringLastGap;
+    }
+
+    public long getSendsDuringGaps() {
+        return sendsDuringGaps.get();
+    }
+
+    void onAttempt() {
+        attempts.incrementAndGet();
+    }
+
+    synchronized void onSendDuringGap() {
+        gapSends++;
+        sendsDuringGaps.incrementAndGet();
+    }
+
+    synchronized void onRecovered(long recoveryTimeMs) {
+        reconnects.incrementAndGet();
+        totalRecoveryTimeMs.addAndGet(recoveryTimeMs);
+        lastRecoveryTimeMs = recoveryTimeMs;
+        if (recoveryTimeMs > maxRecoveryTimeMs) maxRecoveryTimeMs = recoveryTimeMs;
+        sendsDuringLastGap = gapSends;
+        gapSends = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectMetrics{reconnects=" + getReconnectCount() + ", attempts=" + getAttemptCount()
+                + ", lastRecoveryTimeMs=" + lastRecoveryTimeMs + ", maxRecoveryTimeMs=" + maxRecoveryTimeMs
+                + ", sendsDuringLastGap=" + sendsDuringLastGap + '}';
+    }
+}
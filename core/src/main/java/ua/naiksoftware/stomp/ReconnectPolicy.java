@@ -0,0 +1,100 @@
+package ua.naiksoftware.stomp;
+
+import java.util.Random;
+
+/**
+ * Delays of {@link StompClient#withAutoReconnect} attempts: exponential backoff with random jitter,
+ * so that many clients dropped at once by a broker restart don't reconnect in lockstep.
+ * <p>
+ * The delay of attempt {@code n}, counting from 0, is {@code min(maxDelayMs, initialDelayMs * multiplier^n)}
+ * reduced by a random part of up to {@code jitter} of it.
+ */
+public final class ReconnectPolicy {
+
+    private static final Random RANDOM = new Random();
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final double multiplier;
+    private final double jitter;
+    private final int maxAttempts;
+
+    private ReconnectPolicy(long initialDelayMs, long maxDelayMs, double multiplier, double jitter, int maxAttempts) {
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Doubling delays with 50% jitter and unlimited attempts.
+     */
+    public static ReconnectPolicy exponential(long initialDelayMs, long maxDelayMs) {
+        if (initialDelayMs <= 0) throw new IllegalArgumentException("Initial delay must be positive: " + initialDelayMs);
+        if (maxDelayMs < initialDelayMs) throw new IllegalArgumentException("Max delay must not be less than initial: " + maxDelayMs);
+        return new ReconnectPolicy(initialDelayMs, maxDelayMs, 2, 0.5, 0);
+    }
+
+    public ReconnectPolicy withMultiplier(double multiplier) {
+        if (multiplier < 1) throw new IllegalArgumentException("Multiplier must be at least 1: " + multiplier);
+        return new ReconnectPolicy(initialDelayMs, maxDelayMs, multiplier, jitter, maxAttempts);
+    }
+
+    /**
+     * @param jitter from 0 for exact delays to 1 for delays anywhere from 0 to the backoff
+     */
+    public ReconnectPolicy withJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) throw new IllegalArgumentException("Jitter must be in [0, 1]: " + jitter);
+        return new ReconnectPolicy(initialDelayMs, maxDelayMs, multiplier, jitter, maxAttempts);
+    }
+
+    /**
+     * @param maxAttempts attempts in a row before the client gives up and disconnects, 0 for no limit
+     */
+    public ReconnectPolicy withMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 0) throw new IllegalArgumentException("Max attempts must not be negative: " + maxAttempts);
+        return new ReconnectPolicy(initialDelayMs, maxDelayMs, multiplier, jitter, maxAttempts);
+    }
+
+    public long getInitialDelayMs() {
+        return initialDelayMs;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return false if the attempt is over the limit
+     */
+    public boolean canAttempt(int attempt) {
+        return maxAttempts == 0 || attempt < maxAttempts;
+    }
+
+    /**
+     * @param attempt attempt number, from 0
+     */
+    public long delayMs(int attempt) {
+        double backoff = Math.min(maxDelayMs, initialDelayMs * Math.pow(multiplier, attempt));
+        return (long) (backoff * (1 - jitter * RANDOM.nextDouble()));
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectPolicy{initialDelayMs=" + initialDelayMs + ", maxDelayMs=" + maxDelayMs
+                + ", multiplier=" + multiplier + ", jitter=" + jitter + ", maxAttempts=" + maxAttempts + '}';
+    }
+}
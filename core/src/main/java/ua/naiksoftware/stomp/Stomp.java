@@ -1,10 +1,14 @@
 package ua.naiksoftware.stomp;
 
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
 import ua.naiksoftware.stomp.provider.OkHttpConnectionProvider;
 import ua.naiksoftware.stomp.provider.WebSocketsConnectionProvider;
@@ -21,7 +25,7 @@ import ua.naiksoftware.stomp.provider.WebSocketsConnectionProvider;
  */
 public class Stomp {
 
-    public static StompClient over(@NonNull ConnectionProvider connectionProvider, String uri) {
+    public static StompClient over(@Nonnull ConnectionProvider connectionProvider, String uri) {
         return over(connectionProvider, uri, null, null);
     }
 
@@ -31,7 +35,7 @@ public class Stomp {
      * @param connectHttpHeaders HTTP headers, will be passed with handshake query, may be null
      * @return StompClient for receiving and sending messages. Call #StompClient.connect
      */
-    public static StompClient over(@NonNull ConnectionProvider connectionProvider, String uri, Map<String, String> connectHttpHeaders) {
+    public static StompClient over(@Nonnull ConnectionProvider connectionProvider, String uri, Map<String, String> connectHttpHeaders) {
         return over(connectionProvider, uri, connectHttpHeaders, null);
     }
 
@@ -48,7 +52,7 @@ public class Stomp {
      * @param okHttpClient       Existing client that will be used to open the WebSocket connection, may be null to use default client
      * @return StompClient for receiving and sending messages. Call #StompClient.connect
      */
-    public static StompClient over(@NonNull ConnectionProvider connectionProvider, String uri, @Nullable Map<String, String> connectHttpHeaders, @Nullable OkHttpClient okHttpClient) {
+    public static StompClient over(@Nonnull ConnectionProvider connectionProvider, String uri, @Nullable Map<String, String> connectHttpHeaders, @Nullable OkHttpClient okHttpClient) {
         if (connectionProvider == ConnectionProvider.JWS) {
             if (okHttpClient != null) {
                 throw new IllegalArgumentException("You cannot pass an OkHttpClient when using JWS. Use null instead.");
@@ -63,6 +67,45 @@ public class Stomp {
         throw new IllegalArgumentException("ConnectionProvider type not supported: " + connectionProvider.toString());
     }
 
+    /**
+     * Pool of {@code size} connections to the same server, see {@link StompClientPool}.
+     * OkHttp connections share one {@code okHttpClient}, and all members share one scheduler for heart-beats.
+     * Heart-beats and rebalancing run on {@link Schedulers#io()}.
+     *
+     * @param connectionProvider connectionProvider method
+     * @param uri                URI to connect
+     * @param size               count of connections
+     * @param connectHttpHeaders HTTP headers, will be passed with handshake query, may be null
+     * @param okHttpClient       Existing client that will be used to open the WebSocket connections, may be null to use default client
+     * @return StompClientPool for receiving and sending messages. Call #StompClientPool.connect
+     */
+    public static StompClientPool overPool(@Nonnull ConnectionProvider connectionProvider, String uri, int size,
+                                           @Nullable Map<String, String> connectHttpHeaders, @Nullable OkHttpClient okHttpClient) {
+        return overPool(connectionProvider, uri, size, connectHttpHeaders, okHttpClient, Schedulers.io());
+    }
+
+    /**
+     * Like {@link #overPool(ConnectionProvider, String, int, Map, OkHttpClient)}.
+     *
+     * @param scheduler runs heart-beats and rebalancing of the pool. Rebalancing may wait for a member
+     *                  to send or connect, so don't pass a scheduler other work depends on, such as {@link Schedulers#single()}
+     */
+    public static StompClientPool overPool(@Nonnull ConnectionProvider connectionProvider, String uri, int size,
+                                           @Nullable Map<String, String> connectHttpHeaders, @Nullable OkHttpClient okHttpClient,
+                                           @Nonnull Scheduler scheduler) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        if (connectionProvider == ConnectionProvider.OKHTTP && okHttpClient == null) {
+            okHttpClient = new OkHttpClient();
+        }
+        List<StompClient> clients = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            clients.add(over(connectionProvider, uri, connectHttpHeaders, okHttpClient));
+        }
+        return new StompClientPool(clients, scheduler);
+    }
+
     private static StompClient createStompClient(ua.naiksoftware.stomp.provider.ConnectionProvider connectionProvider) {
         return new StompClient(connectionProvider);
     }
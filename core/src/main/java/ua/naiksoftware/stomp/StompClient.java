@@ -0,0 +1,1119 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
+import ua.naiksoftware.stomp.dto.SendTemplate;
+import ua.naiksoftware.stomp.dto.StompCommand;
+import ua.naiksoftware.stomp.dto.StompFrameEncoder;
+import ua.naiksoftware.stomp.dto.StompMessage;
+import ua.naiksoftware.stomp.dto.StreamingFrame;
+import ua.naiksoftware.stomp.pathmatcher.PathMatcher;
+import ua.naiksoftware.stomp.pathmatcher.SimplePathMatcher;
+import ua.naiksoftware.stomp.provider.AbstractConnectionProvider;
+import ua.naiksoftware.stomp.provider.BinaryConnectionProvider;
+import ua.naiksoftware.stomp.provider.CompressionMetrics;
+import ua.naiksoftware.stomp.provider.ConnectionProvider;
+import ua.naiksoftware.stomp.provider.WebSocketsConnectionProvider;
+import ua.naiksoftware.stomp.dto.LifecycleEvent;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.log.StompLog;
+
+/**
+ * Created by naik on 05.05.16.
+ */
+public class StompClient {
+
+    private static final String TAG = StompClient.class.getSimpleName();
+
+    public static final String SUPPORTED_VERSIONS = "1.1,1.2";
+    public static final String DEFAULT_ACK = AckMode.AUTO.getValue();
+
+    private final ConnectionProvider connectionProvider;
+    private final SubscriptionRouter subscriptionRouter;
+    private final OutboundQueue outboundQueue;
+    @Nullable
+    private AckBatcher ackBatcher;
+    @Nullable
+    private ReceiptTracker receiptTracker;
+    @Nullable
+    private StompMetrics metrics;
+    @Nullable
+    private DispatchLanes dispatchLanes;
+    private boolean legacyWhitespace;
+
+    private BehaviorSubject<Boolean> connectionStream;
+    // unlike connectionStream, never completes and spans connections
+    private final PublishSubject<Boolean> connectionChanges = PublishSubject.create();
+    private Disposable lifecycleDisposable;
+    private Disposable messagesDisposable;
+    private PublishSubject<LifecycleEvent> lifecyclePublishSubject;
+    private List<StompHeader> headers;
+    private HeartBeatTask heartBeatTask;
+    @Nullable
+    private ReconnectPolicy reconnectPolicy;
+    private final ReconnectMetrics reconnectMetrics = new ReconnectMetrics();
+    private Scheduler decodeScheduler = Schedulers.computation();
+    private int decodeConcurrency = Runtime.getRuntime().availableProcessors();
+    @Nullable
+    private Decoder.Factory decoderFactory;
+    private volatile boolean disconnecting;
+    // guarded by this
+    @Nullable
+    private Disposable reconnectDisposable;
+    // guarded by this
+    private int reconnectAttempt;
+    private volatile long gapStartMs;
+
+    private static final ThreadLocal<StompFrameEncoder> ENCODER = new ThreadLocal<StompFrameEncoder>() {
+        @Override
+        protected StompFrameEncoder initialValue() {
+            return new StompFrameEncoder();
+        }
+    };
+
+    public StompClient(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+        subscriptionRouter = new SubscriptionRouter();
+        outboundQueue = new OutboundQueue(new OutboundQueue.Writer() {
+            @Override
+            public Completable write(String frames) {
+                return connectionProvider.send(frames);
+            }
+
+            @Override
+            public Completable write(ByteBuffer frame) {
+                return ((BinaryConnectionProvider) connectionProvider).send(frame);
+            }
+        }, Clock.SYSTEM, BackpressureConfig.UNBOUNDED);
+        lifecyclePublishSubject = PublishSubject.create();
+        heartBeatTask = new HeartBeatTask(this::sendHeartBeat, () -> {
+            if (metrics != null) metrics.onHeartBeatMiss();
+            lifecyclePublishSubject.onNext(new LifecycleEvent(LifecycleEvent.Type.FAILED_SERVER_HEARTBEAT));
+            if (reconnectPolicy != null) {
+                // the socket may be half-open, close it to reconnect
+                connectionProvider.disconnect()
+                        .subscribeOn(Schedulers.io())
+                        .subscribe(() -> {
+                        }, e -> StompLog.e(TAG, "Disconnect error", e));
+            }
+        });
+    }
+
+    /**
+     * Sets the heartbeat interval to request from the server.
+     * <p>
+     * Not very useful yet, because we don't have any heartbeat logic on our side.
+     *
+     * @param ms heartbeat time in milliseconds
+     */
+    public StompClient withServerHeartbeat(int ms) {
+        heartBeatTask.setServerHeartbeat(ms);
+        return this;
+    }
+
+    /**
+     * Sets the heartbeat interval that client propose to send.
+     * <p>
+     * Not very useful yet, because we don't have any heartbeat logic on our side.
+     *
+     * @param ms heartbeat time in milliseconds
+     */
+    public StompClient withClientHeartbeat(int ms) {
+        heartBeatTask.setClientHeartbeat(ms);
+        return this;
+    }
+
+    /**
+     * Sets the timer wheel that checks heart-beats, {@link HeartBeatTimer#shared()} by default.
+     * Takes effect on the next connect.
+     */
+    public StompClient withHeartBeatTimer(@Nonnull HeartBeatTimer timer) {
+        heartBeatTask.setTimer(timer);
+        return this;
+    }
+
+    /**
+     * Reconnects on connection loss instead of disconnecting. {@link #topic} Flowables stay alive,
+     * their subscriptions are sent again in one write right after the CONNECTED frame, before anything
+     * else waiting for the connection.
+     *
+     * @param policy delays between attempts, null to disconnect on connection loss as by default
+     * @see #getReconnectMetrics()
+     */
+    public StompClient withAutoReconnect(@Nullable ReconnectPolicy policy) {
+        this.reconnectPolicy = policy;
+        return this;
+    }
+
+    public ReconnectMetrics getReconnectMetrics() {
+        return reconnectMetrics;
+    }
+
+    /**
+     * Limits the queue of messages sent while not connected, which is unbounded by default.
+     * Queued messages are sent in order in one write on CONNECTED. Messages dropped on overflow,
+     * and with {@link BackpressureConfig.Overflow#ERROR} the new message, fail their send with
+     * {@link io.reactivex.exceptions.MissingBackpressureException}.
+     *
+     * @param config capacity in messages and maxBytes of queued frames
+     */
+    public StompClient withOutboundQueue(@Nonnull BackpressureConfig config) {
+        outboundQueue.setConfig(config);
+        return this;
+    }
+
+    public OutboundQueueMetrics getOutboundQueueMetrics() {
+        return outboundQueue.getMetrics();
+    }
+
+    /**
+     * Starts recording {@link StompMetrics}. Without it the client records nothing.
+     */
+    public StompClient withMetrics() {
+        if (metrics == null) metrics = new StompMetrics(subscriptionRouter);
+        return this;
+    }
+
+    /**
+     * @return null unless {@link #withMetrics()} is set
+     */
+    @Nullable
+    public StompMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Delivers messages to topic subscribers on the scheduler instead of the socket reader thread,
+     * which then only parses frames, answers heart-beats and queues messages. Each subscription is
+     * delivered on one of {@code lanes} serial lanes, so its messages keep their order, and
+     * subscriptions on different lanes run in parallel: a slow subscriber only delays its own lane.
+     * <p>
+     * By default messages are delivered on the reader thread.
+     *
+     * @param scheduler each lane is one of its workers. Workers of {@link Schedulers#computation()} share
+     *                  one thread per CPU, {@link Schedulers#newThread()} gives every lane its own thread
+     * @param lanes     how many subscriptions may be delivered at once
+     */
+    public StompClient withDispatch(@Nonnull Scheduler scheduler, int lanes) {
+        DispatchLanes previous = dispatchLanes;
+        dispatchLanes = new DispatchLanes(scheduler, lanes);
+        subscriptionRouter.setLanes(dispatchLanes);
+        if (previous != null) previous.dispose();
+        return this;
+    }
+
+    /**
+     * Where typed topics decode messages, {@link Schedulers#computation()} with as many messages
+     * at once as there are CPUs by default.
+     *
+     * @param maxConcurrency how many messages of one topic subscriber may be decoded at once
+     */
+    public StompClient withDecoding(@Nonnull Scheduler scheduler, int maxConcurrency) {
+        this.decodeScheduler = scheduler;
+        this.decodeConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * Decoders for {@link #topicAs(String, Class)}. String, CharSequence, ByteBuffer, byte[]
+     * and StompMessage are supported without a factory.
+     */
+    public StompClient withDecoderFactory(@Nullable Decoder.Factory factory) {
+        this.decoderFactory = factory;
+        return this;
+    }
+
+    /**
+     * Asks the broker for a RECEIPT of every SEND frame, the Completable of {@link #send} completes
+     * only when the broker has processed the message. Up to {@code maxInFlight} sends are pipelined,
+     * the next ones are written as receipts arrive.
+     * <p>
+     * Sends waiting for a receipt fail when the connection is lost, the message may or may not
+     * have been processed.
+     *
+     * @param maxInFlight how many sends may wait for their receipt at once
+     * @see #getReceiptLatency()
+     */
+    public StompClient withReceipts(int maxInFlight) {
+        receiptTracker = new ReceiptTracker(maxInFlight);
+        return this;
+    }
+
+    /**
+     * @return round trips in microseconds from writing a SEND to its RECEIPT, null unless {@link #withReceipts} is set
+     */
+    @Nullable
+    public LatencyHistogram getReceiptLatency() {
+        return receiptTracker != null ? receiptTracker.getLatency() : null;
+    }
+
+    /**
+     * Gathers the {@link #ack} calls and sends their ACK frames in one write after {@code maxMessages}
+     * acks or {@code maxDelayMs}, whichever comes first. Only the ACK of the last received message of a
+     * {@link AckMode#CLIENT} subscription is sent, it acknowledges the previous messages too.
+     * <p>
+     * A message is redelivered if the connection is lost before its ACK is sent, ack() fails then.
+     *
+     * @param maxMessages send the batch as soon as it has this many acks
+     * @param maxDelayMs  how long to gather acks after the first one of a batch
+     */
+    public StompClient withAckBatching(int maxMessages, long maxDelayMs) {
+        ackBatcher = new AckBatcher(frames -> outboundQueue.enqueue(frames)
+                .doOnComplete(heartBeatTask::onFrameSent), Schedulers.computation(), maxMessages, maxDelayMs);
+        return this;
+    }
+
+    /**
+     * Opt-in write coalescing, see {@link AbstractConnectionProvider#setWriteCoalescing(long, int)}.
+     *
+     * @param windowMs     how long to gather frames after the first one of a batch
+     * @param maxBatchSize write the batch as soon as it gets this long, in chars
+     */
+    public StompClient withWriteCoalescing(long windowMs, int maxBatchSize) {
+        if (!(connectionProvider instanceof AbstractConnectionProvider)) {
+            throw new UnsupportedOperationException("Write coalescing is not supported by " + connectionProvider);
+        }
+        ((AbstractConnectionProvider) connectionProvider).setWriteCoalescing(windowMs, maxBatchSize);
+        return this;
+    }
+
+    /**
+     * Opt-in permessage-deflate, see {@link WebSocketsConnectionProvider#setCompression(int, int)}.
+     * Takes effect from the next connect.
+     *
+     * @param level   {@link java.util.zip.Deflater} level, 1 (fastest) to 9 (smallest) or -1 for the default
+     * @param minSize messages with smaller payloads are sent uncompressed, in bytes
+     */
+    public StompClient withCompression(int level, int minSize) {
+        if (!(connectionProvider instanceof WebSocketsConnectionProvider)) {
+            throw new UnsupportedOperationException("Compression is not supported by " + connectionProvider);
+        }
+        ((WebSocketsConnectionProvider) connectionProvider).setCompression(level, minSize);
+        return this;
+    }
+
+    /**
+     * @return null without {@link #withCompression(int, int)}
+     */
+    @Nullable
+    public CompressionMetrics getCompressionMetrics() {
+        return connectionProvider instanceof WebSocketsConnectionProvider
+                ? ((WebSocketsConnectionProvider) connectionProvider).getCompressionMetrics() : null;
+    }
+
+    /**
+     * Receive large frames without holding their body as a String: text messages of at least
+     * {@code thresholdBytes} are parsed from their UTF-8 bytes, like binary messages always are.
+     * Read such bodies with {@link StompMessage#getPayloadReader()} or {@link StompMessage#getPayloadStream()}.
+     * Their {@link StompMessage#isBinary()} is true, as for binary messages.
+     * <p>
+     * Only the Java-WebSocket provider can skip the String, OkHttp decodes text messages itself.
+     * Takes effect from the next connect.
+     *
+     * @throws UnsupportedOperationException for other providers
+     */
+    public StompClient withStreamingReceive(int thresholdBytes) {
+        if (!(connectionProvider instanceof WebSocketsConnectionProvider)) {
+            throw new UnsupportedOperationException("Streaming receive is not supported by " + connectionProvider);
+        }
+        ((WebSocketsConnectionProvider) connectionProvider).setStreamingThreshold(thresholdBytes);
+        return this;
+    }
+
+    /**
+     * Connect without reconnect if connected
+     */
+    public void connect() {
+        connect(null);
+    }
+
+    /**
+     * Connect to websocket. If already connected, this will silently fail.
+     *
+     * @param _headers HTTP headers to send in the INITIAL REQUEST, i.e. during the protocol upgrade
+     */
+    public void connect(@Nullable List<StompHeader> _headers) {
+
+        StompLog.d(TAG, "Connect");
+
+        this.headers = _headers;
+
+        if (isConnected()) {
+            StompLog.d(TAG, "Already connected, ignore");
+            return;
+        }
+        disconnecting = false;
+        lifecycleDisposable = connectionProvider.lifecycle()
+                .subscribe(lifecycleEvent -> {
+                    switch (lifecycleEvent.getType()) {
+                        case OPENED:
+                            List<StompHeader> headers = new ArrayList<>();
+                            headers.add(new StompHeader(StompHeader.VERSION, SUPPORTED_VERSIONS));
+                            headers.add(new StompHeader(StompHeader.HEART_BEAT,
+                                    heartBeatTask.getClientHeartbeat() + "," + heartBeatTask.getServerHeartbeat()));
+
+                            if (_headers != null) headers.addAll(_headers);
+
+                            connectionProvider.send(new StompMessage(StompCommand.CONNECT, headers, null).compile(legacyWhitespace))
+                                    .subscribe(() -> {
+                                        StompLog.d(TAG, "Publish open");
+                                        lifecyclePublishSubject.onNext(lifecycleEvent);
+                                    });
+                            break;
+
+                        case CLOSED:
+                            StompLog.d(TAG, "Socket closed");
+                            if (reconnectPolicy != null) {
+                                lifecyclePublishSubject.onNext(lifecycleEvent);
+                                scheduleReconnect();
+                            } else {
+                                disconnect();
+                            }
+                            break;
+
+                        case ERROR:
+                            StompLog.d(TAG, "Socket closed with error");
+                            lifecyclePublishSubject.onNext(lifecycleEvent);
+                            break;
+                    }
+                });
+
+        messagesDisposable = subscribeMessages();
+    }
+
+    private Disposable subscribeMessages() {
+        return messages()
+                .doOnNext(StompLog::traceReceived)
+                .filter(heartBeatTask::consumeHeartBeat)
+                .doOnNext(this::correlateReceipt)
+                .doOnNext(this::dispatch)
+                .filter(msg -> msg.getStompCommand().equals(StompCommand.CONNECTED))
+                .subscribe(stompMessage -> {
+                    onConnected();
+                }, onError -> {
+                    StompLog.e(TAG, "Error parsing message", onError);
+                });
+    }
+
+    private void onConnected() {
+        resubscribeAll();
+        outboundQueue.open();
+        long gapStart = gapStartMs;
+        if (gapStart != 0) {
+            synchronized (this) {
+                reconnectAttempt = 0;
+            }
+            gapStartMs = 0;
+            reconnectMetrics.onRecovered(Clock.SYSTEM.millis() - gapStart);
+        }
+        getConnectionStream().onNext(true);
+        connectionChanges.onNext(true);
+    }
+
+    /**
+     * Drops the broken connection, but keeps the subscriptions for the next one.
+     */
+    private synchronized void scheduleReconnect() {
+        if (disconnecting || reconnectDisposable != null) return;
+
+        outboundQueue.close();
+        heartBeatTask.shutdown();
+        if (ackBatcher != null) ackBatcher.clear(new IllegalStateException("Connection lost"));
+        if (messagesDisposable != null) {
+            messagesDisposable.dispose();
+        }
+        if (gapStartMs == 0) gapStartMs = Clock.SYSTEM.millis();
+        getConnectionStream().onNext(false);
+        connectionChanges.onNext(false);
+        if (receiptTracker != null) receiptTracker.failInFlight(new IllegalStateException("Connection lost"));
+
+        ReconnectPolicy policy = reconnectPolicy;
+        if (policy == null || !policy.canAttempt(reconnectAttempt)) {
+            StompLog.d(TAG, "Give up reconnecting");
+            disconnect();
+            return;
+        }
+        long delayMs = policy.delayMs(reconnectAttempt++);
+        if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Reconnect attempt " + reconnectAttempt + " in " + delayMs + " ms");
+        reconnectDisposable = Completable.timer(delayMs, TimeUnit.MILLISECONDS)
+                .subscribe(this::reconnectNow);
+    }
+
+    private synchronized void reconnectNow() {
+        reconnectDisposable = null;
+        if (disconnecting) return;
+        reconnectMetrics.onAttempt();
+        messagesDisposable = subscribeMessages();
+    }
+
+    /**
+     * Subscriptions of the previous connection, pipelined in one write.
+     */
+    private void resubscribeAll() {
+        List<Subscription> subscriptions = subscriptionRouter.subscribed();
+        if (subscriptions.isEmpty()) return;
+
+        StringBuilder frames = new StringBuilder();
+        for (Subscription subscription : subscriptions) {
+            frames.append(subscribeMessage(subscription).compile(legacyWhitespace));
+        }
+        if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Subscribe again to " + subscriptions.size() + " paths");
+        connectionProvider.send(frames.toString())
+                .subscribe(() -> {
+                }, e -> StompLog.e(TAG, "Resubscribe error", e));
+    }
+
+    /**
+     * Parsed frames from the provider, binary ones included if the provider supports them.
+     * One WebSocket message may carry several frames.
+     */
+    private Observable<StompMessage> messages() {
+        Observable<StompMessage> textMessages = connectionProvider.messages()
+                .concatMapIterable(this::parse);
+        if (!(connectionProvider instanceof BinaryConnectionProvider)) {
+            return textMessages;
+        }
+        // subscribe binary messages first, as subscribing text messages opens the socket
+        return Observable.merge(((BinaryConnectionProvider) connectionProvider).binaryMessages()
+                .concatMapIterable(this::parse), textMessages);
+    }
+
+    private List<StompMessage> parse(String data) {
+        StompMetrics metrics = this.metrics;
+        if (metrics == null) return StompMessage.fromBatch(data);
+        long start = System.nanoTime();
+        List<StompMessage> messages = StompMessage.fromBatch(data, start);
+        metrics.onParsed(System.nanoTime() - start);
+        return messages;
+    }
+
+    private List<StompMessage> parse(ByteBuffer data) {
+        StompMetrics metrics = this.metrics;
+        if (metrics == null) return StompMessage.fromBatch(data);
+        long start = System.nanoTime();
+        List<StompMessage> messages = StompMessage.fromBatch(data, start);
+        metrics.onParsed(System.nanoTime() - start);
+        return messages;
+    }
+
+    private void dispatch(StompMessage message) {
+        subscriptionRouter.dispatch(message);
+        StompMetrics metrics = this.metrics;
+        if (metrics != null && StompCommand.MESSAGE.equals(message.getStompCommand())) {
+            long receivedNanos = message.getReceivedNanos();
+            // 0 if parsed before the metrics were enabled
+            if (receivedNanos != 0) metrics.onDispatched(System.nanoTime() - receivedNanos);
+            String destination = message.findHeader(StompHeader.DESTINATION);
+            if (destination != null) metrics.onReceived(destination, message.getPayloadLength());
+        }
+    }
+
+    /**
+     * {@link #isConnected()} after every change, across connections. Emitted on the thread that
+     * changed it.
+     */
+    Observable<Boolean> connectionChanges() {
+        return connectionChanges;
+    }
+
+    synchronized private BehaviorSubject<Boolean> getConnectionStream() {
+        if (connectionStream == null || connectionStream.hasComplete()) {
+            connectionStream = BehaviorSubject.createDefault(false);
+        }
+        return connectionStream;
+    }
+
+    public Completable send(String destination) {
+        return send(destination, null);
+    }
+
+    public Completable send(String destination, String data) {
+        return send(new StompMessage(
+                StompCommand.SEND,
+                Collections.singletonList(new StompHeader(StompHeader.DESTINATION, destination)),
+                data));
+    }
+
+    /**
+     * Messages with a binary payload, see {@link StompMessage#binary}, are sent as binary WebSocket
+     * messages if the provider supports them.
+     * Messages sent while not connected wait in the outbound queue, see {@link #withOutboundQueue}.
+     * With {@link #withReceipts} a SEND completes on its RECEIPT.
+     */
+    public Completable send(@Nonnull StompMessage stompMessage) {
+        if (gapStartMs != 0) reconnectMetrics.onSendDuringGap();
+        ReceiptTracker tracker = receiptTracker;
+        if (tracker != null && StompCommand.SEND.equals(stompMessage.getStompCommand())
+                && stompMessage.findHeader(StompHeader.RECEIPT) == null) {
+            return tracker.send(receiptId -> write(withHeader(stompMessage, StompHeader.RECEIPT, receiptId)));
+        }
+        return write(stompMessage);
+    }
+
+    private void recordSent(StompMessage message) {
+        StompMetrics metrics = this.metrics;
+        if (metrics != null && StompCommand.SEND.equals(message.getStompCommand())) {
+            String destination = message.findHeader(StompHeader.DESTINATION);
+            if (destination != null) metrics.onSent(destination, message.getPayloadLength());
+        }
+    }
+
+    /**
+     * Sends a SEND frame of a precompiled template. If the provider supports binary messages, the frame
+     * is encoded straight to UTF-8 into a buffer reused by the calling thread and sent as a binary message,
+     * copied only if it has to wait for the connection. Otherwise, or with {@link #withReceipts},
+     * it is sent as {@link SendTemplate#toMessage}.
+     */
+    public Completable send(@Nonnull SendTemplate template, @Nullable String payload) {
+        if (receiptTracker != null || !(connectionProvider instanceof BinaryConnectionProvider)) {
+            return send(template.toMessage(payload));
+        }
+        if (gapStartMs != 0) reconnectMetrics.onSendDuringGap();
+        Completable completable = Completable.defer(() -> {
+            StompFrameEncoder encoder = ENCODER.get();
+            ByteBuffer frame = encoder.encode(template, payload);
+            StompMetrics metrics = this.metrics;
+            if (metrics != null) metrics.onSent(template.getDestination(), encoder.payloadLength());
+            return outboundQueue.enqueueTransient(frame);
+        });
+        return StompLog.isTracing()
+                ? completable.doOnComplete(() -> {
+                    heartBeatTask.onFrameSent();
+                    StompLog.traceSent(template.toMessage(payload));
+                })
+                : completable.doOnComplete(heartBeatTask::onFrameSent);
+    }
+
+    /**
+     * Sends a SEND frame whose body is read from the stream while it is written, so a large body is never
+     * held whole: the Java-WebSocket provider writes it as continuation frames, OkHttp as one message.
+     * Frames sent meanwhile, ACKs included, wait in the outbound queue until it is written, and so do later
+     * uploads. The stream is read on the subscribing thread, or for an upload that waited, on the thread
+     * that wrote the one before it, so subscribe on an I/O scheduler.
+     * <p>
+     * Unlike other sends it fails if not connected, the stream can't wait for a connection.
+     * The stream is not closed.
+     *
+     * @param contentLength exact length of the body, the send fails if the stream ends earlier
+     */
+    public Completable send(@Nonnull SendTemplate template, @Nonnull InputStream body, long contentLength) {
+        return sendStreaming(template, Channels.newChannel(body), contentLength);
+    }
+
+    /**
+     * Like {@link #send(SendTemplate, InputStream, long)}, the body is written from the buffer as it is.
+     */
+    public Completable send(@Nonnull SendTemplate template, @Nonnull ByteBuffer body) {
+        return sendStreaming(template, null, body, body.remaining());
+    }
+
+    /**
+     * Like {@link #send(SendTemplate, InputStream, long)}, with the file as the body.
+     */
+    public Completable send(@Nonnull SendTemplate template, @Nonnull File body) {
+        return Completable.using(
+                () -> new FileInputStream(body).getChannel(),
+                channel -> sendStreaming(template, channel, channel.size()),
+                FileChannel::close);
+    }
+
+    private Completable sendStreaming(SendTemplate template, ReadableByteChannel body, long contentLength) {
+        return sendStreaming(template, body, null, contentLength);
+    }
+
+    private Completable sendStreaming(SendTemplate template, @Nullable ReadableByteChannel body,
+                                      @Nullable ByteBuffer bodyBytes, long contentLength) {
+        if (gapStartMs != 0) reconnectMetrics.onSendDuringGap();
+        ReceiptTracker tracker = receiptTracker;
+        if (tracker != null) {
+            return tracker.send(receiptId -> writeStreaming(template, receiptId, body, bodyBytes, contentLength));
+        }
+        return writeStreaming(template, null, body, bodyBytes, contentLength);
+    }
+
+    private Completable writeStreaming(SendTemplate template, @Nullable String receiptId, @Nullable ReadableByteChannel body,
+                                       @Nullable ByteBuffer bodyBytes, long contentLength) {
+        return outboundQueue.writeIfOpen(() -> {
+            StreamingFrame frame = bodyBytes != null
+                    ? new StreamingFrame(template, receiptId, bodyBytes)
+                    : new StreamingFrame(template, receiptId, body, contentLength);
+            Completable completable;
+            if (connectionProvider instanceof AbstractConnectionProvider) {
+                StompMetrics metrics = this.metrics;
+                if (metrics != null) metrics.onSent(template.getDestination(), (int) Math.min(contentLength, Integer.MAX_VALUE));
+                completable = ((AbstractConnectionProvider) connectionProvider).send(countingActivity(frame), frame.length());
+            } else {
+                // other providers only take whole messages, written past the queue the upload waited in
+                ByteBuffer bytes = bodyBytes != null ? bodyBytes : readFully(body, contentLength);
+                StompMessage message = StompMessage.binary(StompCommand.SEND, template.getHeaders(), bytes);
+                if (receiptId != null) message = withHeader(message, StompHeader.RECEIPT, receiptId);
+                recordSent(message);
+                completable = connectionProvider instanceof BinaryConnectionProvider
+                        ? ((BinaryConnectionProvider) connectionProvider).send(message.compileBytes())
+                        : connectionProvider.send(message.compile(legacyWhitespace));
+            }
+            return StompLog.isTracing()
+                    ? completable.doOnComplete(() -> {
+                        heartBeatTask.onFrameSent();
+                        StompLog.traceSent(template.toMessage(null));
+                    })
+                    : completable.doOnComplete(heartBeatTask::onFrameSent);
+        });
+    }
+
+    /**
+     * Every read of an upload is written right after, so it postpones the client heart-beat like a
+     * sent frame: a long upload does not make it due.
+     */
+    private ReadableByteChannel countingActivity(ReadableByteChannel channel) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int read = channel.read(dst);
+                heartBeatTask.onFrameSent();
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel body, long contentLength) throws IOException {
+        if (contentLength > Integer.MAX_VALUE) throw new IOException("Body of " + contentLength + " bytes is too large");
+        ByteBuffer bytes = ByteBuffer.allocate((int) contentLength);
+        while (bytes.hasRemaining()) {
+            if (body.read(bytes) < 0) {
+                throw new EOFException("Body ended after " + bytes.position() + " of " + contentLength + " bytes");
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    private Completable write(@Nonnull StompMessage stompMessage) {
+        recordSent(stompMessage);
+        Completable completable = stompMessage.isBinary() && connectionProvider instanceof BinaryConnectionProvider
+                ? outboundQueue.enqueue(stompMessage.compileBytes())
+                : outboundQueue.enqueue(stompMessage.compile(legacyWhitespace));
+        return StompLog.isTracing()
+                ? completable.doOnComplete(() -> {
+                    heartBeatTask.onFrameSent();
+                    StompLog.traceSent(stompMessage);
+                })
+                : completable.doOnComplete(heartBeatTask::onFrameSent);
+    }
+
+    /**
+     * Acknowledges a message of a {@link AckMode#CLIENT} or {@link AckMode#CLIENT_INDIVIDUAL} topic.
+     * Acks are batched if enabled with {@link #withAckBatching}.
+     * <p>
+     * An ACK of a {@link AckMode#CLIENT} topic acknowledges the messages received before too, so acking a message
+     * after a later one, e.g. when they are processed in parallel, sends nothing.
+     * <p>
+     * Fails if not connected: the broker redelivers unacknowledged messages of a lost connection,
+     * so the ack id of the message is not valid on the next one.
+     */
+    public Completable ack(@Nonnull StompMessage message) {
+        return acknowledge(StompCommand.ACK, message);
+    }
+
+    /**
+     * Tells the broker the message was not consumed. Pending batched acks of the same connection are
+     * sent first, so that a cumulative ACK does not cover the message afterwards.
+     */
+    public Completable nack(@Nonnull StompMessage message) {
+        return acknowledge(StompCommand.NACK, message);
+    }
+
+    private Completable acknowledge(String command, StompMessage message) {
+        if (!StompCommand.MESSAGE.equals(message.getStompCommand())) {
+            return Completable.error(new IllegalArgumentException("Only MESSAGE frames can be acknowledged"));
+        }
+        if (!isConnected()) {
+            return Completable.error(new IllegalStateException("Not connected, the message will be redelivered"));
+        }
+        String subscriptionId = message.findHeader(StompHeader.SUBSCRIPTION);
+        Subscription subscription = subscriptionId != null ? subscriptionRouter.findById(subscriptionId) : null;
+        if (subscription != null && subscription.getAckMode() == AckMode.AUTO) {
+            return Completable.error(new IllegalArgumentException(
+                    "Subscription to " + subscription.getDestination() + " is acknowledged automatically"));
+        }
+
+        List<StompHeader> headers = new ArrayList<>(2);
+        String ackId = message.findHeader(StompHeader.ACK);
+        if (ackId != null) {
+            // STOMP 1.2
+            headers.add(new StompHeader(StompHeader.ID, ackId));
+        } else {
+            headers.add(new StompHeader(StompHeader.MESSAGE_ID, message.findHeader(StompHeader.MESSAGE_ID)));
+            headers.add(new StompHeader(StompHeader.SUBSCRIPTION, subscriptionId));
+        }
+        StompMessage frame = new StompMessage(command, headers, null);
+
+        AckBatcher batcher = ackBatcher;
+        if (StompCommand.ACK.equals(command) && subscription != null && !subscription.acknowledgeUpTo(message)) {
+            // acknowledged already by the cumulative ACK of a later message, which must not be undone
+            return batcher != null ? batcher.join(subscriptionId) : Completable.complete();
+        }
+        if (batcher == null) return send(frame);
+        if (StompCommand.NACK.equals(command)) {
+            batcher.flush();
+            return send(frame);
+        }
+        boolean cumulative = subscription != null && subscription.getAckMode() == AckMode.CLIENT;
+        Completable completable = batcher.add(subscriptionId != null ? subscriptionId : "",
+                cumulative, frame.compile(legacyWhitespace));
+        return StompLog.isTracing() ? completable.doOnComplete(() -> StompLog.traceSent(frame)) : completable;
+    }
+
+    /**
+     * Starts a transaction, its sends are written together on {@link StompTransaction#commit()}.
+     */
+    public StompTransaction beginTransaction() {
+        return new StompTransaction(this, "tx-" + UUID.randomUUID().toString());
+    }
+
+    /**
+     * Runs the body in a new transaction and commits it, or aborts it if the body throws.
+     */
+    public Completable transaction(@Nonnull StompTransaction.Body body) {
+        return Completable.defer(() -> {
+            StompTransaction transaction = beginTransaction();
+            try {
+                body.run(transaction);
+            } catch (Exception e) {
+                transaction.abort();
+                return Completable.error(e);
+            }
+            return transaction.commit();
+        });
+    }
+
+    /**
+     * BEGIN, the sends and COMMIT in one write. If the broker answers the COMMIT with an ERROR and keeps
+     * the connection, an ABORT is sent to not leave the transaction open. A lost connection aborts it anyway.
+     */
+    Completable sendTransaction(StompTransaction transaction, List<StompMessage> frames) {
+        if (gapStartMs != 0) reconnectMetrics.onSendDuringGap();
+        int last = frames.size() - 1;
+        ReceiptTracker tracker = receiptTracker;
+        if (tracker == null) {
+            return writeAll(frames);
+        }
+        return tracker.send(receiptId -> {
+            List<StompMessage> receipted = new ArrayList<>(frames);
+            receipted.set(last, withHeader(frames.get(last), StompHeader.RECEIPT, receiptId));
+            return writeAll(receipted);
+        }).onErrorResumeNext(throwable -> isConnected()
+                ? write(transaction.abortFrame()).onErrorComplete().andThen(Completable.error(throwable))
+                : Completable.error(throwable));
+    }
+
+    private Completable writeAll(List<StompMessage> frames) {
+        StringBuilder batch = new StringBuilder();
+        for (StompMessage frame : frames) {
+            recordSent(frame);
+            batch.append(frame.compile(legacyWhitespace));
+        }
+        Completable completable = outboundQueue.enqueue(batch.toString());
+        return StompLog.isTracing()
+                ? completable.doOnComplete(() -> {
+                    heartBeatTask.onFrameSent();
+                    for (StompMessage frame : frames) StompLog.traceSent(frame);
+                })
+                : completable.doOnComplete(heartBeatTask::onFrameSent);
+    }
+
+    private static StompMessage withHeader(StompMessage message, String key, String value) {
+        List<StompHeader> headers = new ArrayList<>(message.getStompHeaders().size() + 1);
+        headers.addAll(message.getStompHeaders());
+        headers.add(new StompHeader(key, value));
+        return message.isBinary()
+                ? StompMessage.binary(message.getStompCommand(), headers, message.getPayloadBytes())
+                : new StompMessage(message.getStompCommand(), headers, message.getPayload());
+    }
+
+    private void correlateReceipt(StompMessage message) {
+        ReceiptTracker tracker = receiptTracker;
+        if (tracker == null) return;
+        if (StompCommand.RECEIPT.equals(message.getStompCommand())) {
+            tracker.onReceipt(message.findHeader(StompHeader.RECEIPT_ID));
+        } else if (StompCommand.ERROR.equals(message.getStompCommand())) {
+            tracker.fail(message.findHeader(StompHeader.RECEIPT_ID),
+                    new IllegalStateException("Broker error: " + message.findHeader(StompHeader.MESSAGE)));
+        }
+    }
+
+    private void sendHeartBeat(@Nonnull String pingMessage) {
+        Completable completable = connectionProvider.send(pingMessage);
+        CompletableSource connectionComplete = getConnectionStream()
+                .filter(isConnected -> isConnected)
+                .firstElement().ignoreElement();
+        // off the shared timer thread, the send may wait for an upload on the socket
+        completable.startWith(connectionComplete)
+                .subscribeOn(Schedulers.io())
+                .onErrorComplete()
+                .subscribe();
+    }
+
+    public Flowable<LifecycleEvent> lifecycle() {
+        return lifecyclePublishSubject.toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    /**
+     * @param backpressure how to buffer lifecycle events for a slow consumer, maxBytes is ignored
+     */
+    public Flowable<LifecycleEvent> lifecycle(@Nonnull BackpressureConfig backpressure) {
+        if (backpressure.isUnbounded()) return lifecycle();
+        return lifecyclePublishSubject.toFlowable(BackpressureStrategy.MISSING)
+                .lift(new BoundedBufferOperator<>(backpressure, event -> 0, null));
+    }
+
+    /**
+     * Disconnect from server, and then reconnect with the last-used headers
+     */
+    public void reconnect() {
+        disconnectCompletable()
+                .subscribe(() -> connect(headers),
+                        e -> StompLog.e(TAG, "Disconnect error", e));
+    }
+
+    public void disconnect() {
+        disconnectCompletable().subscribe(() -> {
+        }, e -> StompLog.e(TAG, "Disconnect error", e));
+    }
+
+    public Completable disconnectCompletable() {
+
+        synchronized (this) {
+            disconnecting = true;
+            if (reconnectDisposable != null) {
+                reconnectDisposable.dispose();
+                reconnectDisposable = null;
+            }
+            reconnectAttempt = 0;
+        }
+        gapStartMs = 0;
+
+        outboundQueue.close();
+        heartBeatTask.shutdown();
+        if (ackBatcher != null) ackBatcher.clear(new IllegalStateException("Disconnected"));
+
+        if (lifecycleDisposable != null) {
+            lifecycleDisposable.dispose();
+        }
+        if (messagesDisposable != null) {
+            messagesDisposable.dispose();
+        }
+
+        return connectionProvider.disconnect()
+                .doFinally(() -> {
+                    StompLog.d(TAG, "Stomp disconnected");
+                    getConnectionStream().onComplete();
+                    // isConnected() is false before the topics complete
+                    connectionChanges.onNext(false);
+                    subscriptionRouter.completeAll();
+                    outboundQueue.clear(new IllegalStateException("Disconnected"));
+                    if (receiptTracker != null) receiptTracker.clear(new IllegalStateException("Disconnected"));
+                    lifecyclePublishSubject.onNext(new LifecycleEvent(LifecycleEvent.Type.CLOSED));
+                });
+    }
+
+    public Flowable<StompMessage> topic(String destinationPath) {
+        return topic(destinationPath, (List<StompHeader>) null);
+    }
+
+    public Flowable<StompMessage> topic(@Nonnull String destPath, List<StompHeader> headerList) {
+        return topic(destPath, headerList, BackpressureConfig.UNBOUNDED);
+    }
+
+    /**
+     * @param backpressure how to buffer messages for a slow consumer. If the destination is
+     *                     already subscribed, the config of the existing subscription is kept
+     */
+    public Flowable<StompMessage> topic(@Nonnull String destPath, List<StompHeader> headerList,
+                                        @Nonnull BackpressureConfig backpressure) {
+        return topic(destPath, headerList, backpressure, AckMode.AUTO);
+    }
+
+    /**
+     * @param ackMode how the broker expects messages to be acknowledged, see {@link #ack} and {@link #nack}
+     */
+    public Flowable<StompMessage> topic(@Nonnull String destPath, List<StompHeader> headerList,
+                                        @Nonnull AckMode ackMode) {
+        return topic(destPath, headerList, BackpressureConfig.UNBOUNDED, ackMode);
+    }
+
+    /**
+     * @param backpressure how to buffer messages for a slow consumer
+     * @param ackMode      how the broker expects messages to be acknowledged, see {@link #ack} and {@link #nack}.
+     *                     If the destination is already subscribed, both configs of the existing subscription are kept
+     */
+    public Flowable<StompMessage> topic(@Nonnull String destPath, List<StompHeader> headerList,
+                                        @Nonnull BackpressureConfig backpressure, @Nonnull AckMode ackMode) {
+        if (destPath == null)
+            return Flowable.error(new IllegalArgumentException("Topic path cannot be null"));
+
+        Subscription subscription = new Subscription(UUID.randomUUID().toString(), destPath, headerList, backpressure, ackMode);
+        // bounded after share(): its prefetch would otherwise buffer past the limits of a slow subscriber
+        subscription.setFlowable(subscription.buffered(Completable.defer(() -> subscribePath(subscription))
+                .andThen(subscription.getMessages())
+                .doFinally(() -> unsubscribePath(subscription).subscribe())
+                .share()));
+        // a concurrent topic() call for the same destination may have won the registration
+        return subscriptionRouter.register(subscription).getFlowable();
+    }
+
+    /**
+     * Typed topic: messages are decoded off the socket thread on the scheduler of {@link #withDecoding},
+     * several at once, and emitted in the order they were received. A decoder error fails the Flowable.
+     */
+    public <T> Flowable<T> topicAs(@Nonnull String destPath, @Nonnull Decoder<T> decoder) {
+        return topicAs(destPath, null, decoder);
+    }
+
+    public <T> Flowable<T> topicAs(@Nonnull String destPath, List<StompHeader> headerList, @Nonnull Decoder<T> decoder) {
+        Scheduler scheduler = decodeScheduler;
+        return topic(destPath, headerList).concatMapEager(
+                message -> Flowable.fromCallable(() -> decoder.decode(message)).subscribeOn(scheduler),
+                decodeConcurrency, 1);
+    }
+
+    /**
+     * @param type decoded with the {@link #withDecoderFactory factory}, or built-in for String,
+     *             CharSequence, ByteBuffer, byte[] and StompMessage
+     * @see #topicAs(String, Decoder)
+     */
+    public <T> Flowable<T> topicAs(@Nonnull String destPath, @Nonnull Class<T> type) {
+        Decoder.Factory factory = decoderFactory;
+        Decoder<T> decoder = factory != null ? factory.create(type) : null;
+        if (decoder == null) decoder = Decoders.forClass(type);
+        if (decoder == null) {
+            return Flowable.error(new IllegalArgumentException("No decoder for " + type.getName()));
+        }
+        return topicAs(destPath, null, decoder);
+    }
+
+    private Completable subscribePath(Subscription subscription) {
+        subscriptionRouter.activate(subscription);
+
+        return send(subscribeMessage(subscription))
+                .doOnComplete(() -> subscription.setSubscribed(true))
+                .doOnError(throwable -> unsubscribePath(subscription).subscribe());
+    }
+
+    private StompMessage subscribeMessage(Subscription subscription) {
+        List<StompHeader> headers = new ArrayList<>();
+        headers.add(new StompHeader(StompHeader.ID, subscription.getId()));
+        headers.add(new StompHeader(StompHeader.DESTINATION, subscription.getDestination()));
+        headers.add(new StompHeader(StompHeader.ACK, subscription.getAckMode().getValue()));
+        if (subscription.getHeaders() != null) headers.addAll(subscription.getHeaders());
+        return new StompMessage(StompCommand.SUBSCRIBE, headers, null);
+    }
+
+
+    private Completable unsubscribePath(Subscription subscription) {
+        if (!subscriptionRouter.unregister(subscription)) {
+            return Completable.complete();
+        }
+        subscription.setSubscribed(false);
+
+        if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Unsubscribe path: " + subscription.getDestination() + " id: " + subscription.getId());
+
+        return send(new StompMessage(StompCommand.UNSUBSCRIBE,
+                Collections.singletonList(new StompHeader(StompHeader.ID, subscription.getId())), null)).onErrorComplete();
+    }
+
+    /**
+     * Set the wildcard or other matcher for Topic subscription.
+     * <p>
+     * Right now, the only options are simple, rmq supported.
+     * But you can write you own matcher by implementing {@link PathMatcher}
+     * <p>
+     * When set to {@link ua.naiksoftware.stomp.pathmatcher.RabbitPathMatcher}, topic subscription allows for RMQ-style wildcards.
+     * <p>
+     *
+     * @param pathMatcher Set to {@link SimplePathMatcher} by default
+     */
+    public void setPathMatcher(PathMatcher pathMatcher) {
+        subscriptionRouter.setPathMatcher(pathMatcher);
+    }
+
+    public boolean isConnected() {
+        return getConnectionStream().getValue();
+    }
+
+    /**
+     * Reverts to the old frame formatting, which included two newlines between the message body
+     * and the end-of-frame marker.
+     * <p>
+     * Legacy: Body\n\n^@
+     * <p>
+     * Default: Body^@
+     *
+     * @param legacyWhitespace whether to append an extra two newlines
+     * @see <a href="http://stomp.github.io/stomp-specification-1.2.html#STOMP_Frames">The STOMP spec</a>
+     */
+    public void setLegacyWhitespace(boolean legacyWhitespace) {
+        this.legacyWhitespace = legacyWhitespace;
+    }
+    
+    /**
+     * @return how many times the buffer of the destination subscription overflowed,
+     * see {@link BackpressureConfig}. 0 if not subscribed
+     */
+    public long getOverflowCount(String dest) {
+        Subscription subscription = subscriptionRouter.findByDestination(dest);
+        return subscription != null ? subscription.getOverflowCount() : 0;
+    }
+
+    /**
+     * @return overflow counts of all current subscriptions, by destination
+     */
+    public Map<String, Long> getOverflowCounts() {
+        return subscriptionRouter.overflowCounts();
+    }
+
+    /** returns the to topic (subscription id) corresponding to a given destination  
+     * @param dest the destination
+     * @return the topic (subscription id) or null if no topic corresponds to the destination */
+    public String getTopicId(String dest) {
+        Subscription subscription = subscriptionRouter.findByDestination(dest);
+        return subscription != null ? subscription.getId() : null;
+    }
+}
@@ -0,0 +1,178 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import ua.naiksoftware.stomp.dto.LifecycleEvent;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+import ua.naiksoftware.stomp.log.StompLog;
+
+/**
+ * {@link StompClient} API over several connections, for more throughput than one socket gets from a broker.
+ * <p>
+ * Destinations are sharded by a consistent hash, so all subscriptions and sends of a destination go
+ * through one connection and keep their order. When a member connection drops, its topics complete
+ * there and are subscribed again on the next connected member of the ring, until the member is connected again;
+ * topics of other members don't move.
+ * The members share one {@link HeartBeatTimer} ticking on the pool scheduler, which also runs the rebalancing.
+ * <p>
+ * Create a pool with {@link Stomp#overPool}, or from own clients with {@link #StompClientPool(List, Scheduler)}.
+ */
+public class StompClientPool {
+
+    private static final String TAG = StompClientPool.class.getSimpleName();
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final ConsistentHashRing<StompClient> ring;
+    private final Scheduler scheduler;
+    private volatile boolean disconnected;
+
+    /**
+     * @param clients   members, not connected yet
+     * @param scheduler runs heart-beats of all members and the rebalancing, which may wait for a member
+     *                  to send or connect, e.g. {@link io.reactivex.schedulers.Schedulers#io()}
+     */
+    public StompClientPool(@Nonnull List<StompClient> clients, @Nonnull Scheduler scheduler) {
+        this.ring = new ConsistentHashRing<>(clients, VIRTUAL_NODES);
+        this.scheduler = scheduler;
+        HeartBeatTimer timer = new HeartBeatTimer(Clock.SYSTEM, HeartBeatTimer.DEFAULT_TICK_MS,
+                HeartBeatTimer.DEFAULT_WHEEL_SIZE, scheduler);
+        for (StompClient client : clients) client.withHeartBeatTimer(timer);
+    }
+
+    public List<StompClient> getClients() {
+        return ring.getMembers();
+    }
+
+    /**
+     * @return member the destination is currently routed to: its ring owner if connected,
+     * else the next connected member. The owner if none is connected
+     */
+    public StompClient clientFor(@Nonnull String destination) {
+        try {
+            return ring.get(destination, StompClient::isConnected);
+        } catch (Exception e) {
+            // isConnected doesn't throw
+            return ring.get(destination);
+        }
+    }
+
+    public void connect() {
+        connect(null);
+    }
+
+    /**
+     * @param headers HTTP headers to send in the initial request of every connection
+     */
+    public void connect(@Nullable List<StompHeader> headers) {
+        disconnected = false;
+        for (StompClient client : ring.getMembers()) client.connect(headers);
+    }
+
+    public void disconnect() {
+        disconnectCompletable().subscribe(() -> {
+        }, e -> StompLog.e(TAG, "Disconnect error", e));
+    }
+
+    public Completable disconnectCompletable() {
+        disconnected = true;
+        List<Completable> disconnects = new ArrayList<>();
+        for (StompClient client : ring.getMembers()) disconnects.add(client.disconnectCompletable());
+        return Completable.merge(disconnects);
+    }
+
+    /**
+     * @return true if any member is connected
+     */
+    public boolean isConnected() {
+        for (StompClient client : ring.getMembers()) {
+            if (client.isConnected()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lifecycle events of all members.
+     */
+    public Flowable<LifecycleEvent> lifecycle() {
+        List<Flowable<LifecycleEvent>> lifecycles = new ArrayList<>();
+        for (StompClient client : ring.getMembers()) lifecycles.add(client.lifecycle());
+        return Flowable.merge(lifecycles);
+    }
+
+    public Completable send(@Nonnull String destination) {
+        return send(destination, null);
+    }
+
+    public Completable send(@Nonnull String destination, String data) {
+        return Completable.defer(() -> clientFor(destination).send(destination, data));
+    }
+
+    /**
+     * Routed by the destination header, messages without one go to the first member.
+     */
+    public Completable send(@Nonnull StompMessage stompMessage) {
+        return Completable.defer(() -> {
+            String destination = stompMessage.findHeader(StompHeader.DESTINATION);
+            StompClient client = destination != null ? clientFor(destination) : ring.getMembers().get(0);
+            return client.send(stompMessage);
+        });
+    }
+
+    public Flowable<StompMessage> topic(@Nonnull String destPath) {
+        return topic(destPath, (List<StompHeader>) null);
+    }
+
+    public Flowable<StompMessage> topic(@Nonnull String destPath, @Nullable List<StompHeader> headerList) {
+        return topic(destPath, headerList, BackpressureConfig.UNBOUNDED);
+    }
+
+    /**
+     * Completes only when the pool is disconnected. While no member is connected the topic waits
+     * for one, and a topic moved off its owner moves back once the owner is connected again.
+     */
+    public Flowable<StompMessage> topic(@Nonnull String destPath, @Nullable List<StompHeader> headerList,
+                                        @Nonnull BackpressureConfig backpressure) {
+        return Flowable.defer(() -> {
+            if (!isConnected()) return Flowable.<StompMessage>empty();
+            StompClient client = clientFor(destPath);
+            StompClient owner = ring.get(destPath);
+            Flowable<StompMessage> topic = client.topic(destPath, headerList, backpressure);
+            return client == owner ? topic : topic.takeUntil(whenConnected(owner));
+        })
+                // a member topic completes when its connection drops, after it stopped being connected,
+                // so the next subscription goes to another member
+                .repeatWhen(completions -> completions
+                        .observeOn(scheduler)
+                        .takeWhile(ignored -> !disconnected)
+                        .concatMap(ignored -> whenConnected(null)))
+                .share();
+    }
+
+    /**
+     * @param client member to wait for, any member if null
+     * @return emits once the member is connected, right away if it already is
+     */
+    private Flowable<Boolean> whenConnected(@Nullable StompClient client) {
+        List<Observable<Boolean>> changes = new ArrayList<>();
+        for (StompClient member : ring.getMembers()) {
+            if (client == null || member == client) changes.add(member.connectionChanges());
+        }
+        // the changes are subscribed before the current state is checked, so none is missed
+        changes.add(Observable.just(Boolean.TRUE));
+        return Observable.merge(changes)
+                .filter(ignored -> disconnected || (client != null ? client.isConnected() : isConnected()))
+                .take(1)
+                .toFlowable(BackpressureStrategy.LATEST);
+    }
+}
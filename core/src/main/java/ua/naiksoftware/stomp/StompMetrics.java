@@ -0,0 +1,249 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Counters and latencies of a {@link StompClient}, enabled with {@link StompClient#withMetrics()}.
+ * Recording allocates only for the first frame of a destination.
+ */
+public final class StompMetrics {
+
+    /**
+     * How many destinations are counted one by one. Frames of further destinations, e.g. with
+     * a unique reply queue per request, are counted together under {@link #OTHER_DESTINATIONS}.
+     */
+    public static final int MAX_DESTINATIONS = 1024;
+    public static final String OTHER_DESTINATIONS = "(other)";
+
+    private final SubscriptionRouter subscriptionRouter;
+    private final ConcurrentHashMap<String, Counters> destinations = new ConcurrentHashMap<>();
+    private final LatencyHistogram parseNanos = new LatencyHistogram();
+    private final LatencyHistogram dispatchNanos = new LatencyHistogram();
+    private final AtomicLong heartBeatMisses = new AtomicLong();
+
+    StompMetrics(@Nonnull SubscriptionRouter subscriptionRouter) {
+        this.subscriptionRouter = subscriptionRouter;
+    }
+
+    /**
+     * @return counters of a destination since the metrics were enabled, null if no frame went through it
+     * or it is counted under {@link #OTHER_DESTINATIONS}
+     */
+    public Destination getDestination(@Nonnull String destination) {
+        Counters counters = destinations.get(destination);
+        return counters != null ? counters.snapshot(destination) : null;
+    }
+
+    /**
+     * @return time to parse one WebSocket message into frames, in nanoseconds
+     */
+    public LatencyHistogram getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return time from receiving a MESSAGE from the socket to handing it to its topic Flowables,
+     * in nanoseconds. With the default unbounded buffer and no observeOn this is up to the subscriber onNext.
+     * With {@link StompClient#withDispatch} it ends when the message is queued to its lane
+     */
+    public LatencyHistogram getDispatchNanos() {
+        return dispatchNanos;
+    }
+
+    /**
+     * @return how many times the server heart-beat did not come in time
+     */
+    public long getHeartBeatMisses() {
+        return heartBeatMisses.get();
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionRouter.size();
+    }
+
+    /**
+     * @return copy of all the metrics, not changed by further records
+     */
+    public Snapshot snapshot() {
+        Map<String, Destination> destinationSnapshots = new HashMap<>();
+        for (Map.Entry<String, Counters> entry : destinations.entrySet()) {
+            destinationSnapshots.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+        }
+        return new Snapshot(System.currentTimeMillis(), Collections.unmodifiableMap(destinationSnapshots),
+                parseNanos.copy(), dispatchNanos.copy(), heartBeatMisses.get(), getSubscriptionCount());
+    }
+
+    /**
+     * Pushes a snapshot to the listener every period, on the computation scheduler.
+     *
+     * @return dispose to stop
+     */
+    public Disposable addListener(@Nonnull Listener listener, long periodMs) {
+        return Schedulers.computation().schedulePeriodicallyDirect(() -> listener.onSnapshot(snapshot()),
+                periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    void onReceived(@Nonnull String destination, int bytes) {
+        Counters counters = counters(destination);
+        counters.inFrames.incrementAndGet();
+        counters.inBytes.addAndGet(bytes);
+    }
+
+    void onSent(@Nonnull String destination, int bytes) {
+        Counters counters = counters(destination);
+        counters.outFrames.incrementAndGet();
+        counters.outBytes.addAndGet(bytes);
+    }
+
+    void onParsed(long nanos) {
+        parseNanos.record(nanos);
+    }
+
+    void onDispatched(long nanos) {
+        dispatchNanos.record(nanos);
+    }
+
+    void onHeartBeatMiss() {
+        heartBeatMisses.incrementAndGet();
+    }
+
+    private Counters counters(String destination) {
+        Counters counters = destinations.get(destination);
+        if (counters == null) {
+            // may go a few over under races, which is fine for a bound
+            if (destinations.size() >= MAX_DESTINATIONS) {
+                destination = OTHER_DESTINATIONS;
+                counters = destinations.get(destination);
+                if (counters != null) return counters;
+            }
+            Counters created = new Counters();
+            counters = destinations.putIfAbsent(destination, created);
+            if (counters == null) counters = created;
+        }
+        return counters;
+    }
+
+    public interface Listener {
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    /**
+     * Frames and body sizes of one destination, in bytes.
+     */
+    public static final class Destination {
+
+        private final String destination;
+        private final long inFrames;
+        private final long inBytes;
+        private final long outFrames;
+        private final long outBytes;
+
+        Destination(String destination, long inFrames, long inBytes, long outFrames, long outBytes) {
+            this.destination = destination;
+            this.inFrames = inFrames;
+            this.inBytes = inBytes;
+            this.outFrames = outFrames;
+            this.outBytes = outBytes;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public long getInFrames() {
+            return inFrames;
+        }
+
+        public long getInBytes() {
+            return inBytes;
+        }
+
+        public long getOutFrames() {
+            return outFrames;
+        }
+
+        public long getOutBytes() {
+            return outBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Destination{" + destination + ", in=" + inFrames + '/' + inBytes + "B, out=" + outFrames + '/' + outBytes + "B}";
+        }
+    }
+
+    public static final class Snapshot {
+
+        private final long timestampMs;
+        private final Map<String, Destination> destinations;
+        private final LatencyHistogram parseNanos;
+        private final LatencyHistogram dispatchNanos;
+        private final long heartBeatMisses;
+        private final int subscriptionCount;
+
+        Snapshot(long timestampMs, Map<String, Destination> destinations, LatencyHistogram parseNanos,
+                 LatencyHistogram dispatchNanos, long heartBeatMisses, int subscriptionCount) {
+            this.timestampMs = timestampMs;
+            this.destinations = destinations;
+            this.parseNanos = parseNanos;
+            this.dispatchNanos = dispatchNanos;
+            this.heartBeatMisses = heartBeatMisses;
+            this.subscriptionCount = subscriptionCount;
+        }
+
+        /**
+         * @return wall clock time of the snapshot
+         */
+        public long getTimestampMs() {
+            return timestampMs;
+        }
+
+        public Map<String, Destination> getDestinations() {
+            return destinations;
+        }
+
+        public LatencyHistogram getParseNanos() {
+            return parseNanos;
+        }
+
+        public LatencyHistogram getDispatchNanos() {
+            return dispatchNanos;
+        }
+
+        public long getHeartBeatMisses() {
+            return heartBeatMisses;
+        }
+
+        public int getSubscriptionCount() {
+            return subscriptionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "StompMetrics.Snapshot{destinations=" + destinations.values() + ", parseNanos=" + parseNanos
+                    + ", dispatchNanos=" + dispatchNanos + ", heartBeatMisses=" + heartBeatMisses
+                    + ", subscriptions=" + subscriptionCount + '}';
+        }
+    }
+
+    private static final class Counters {
+        final AtomicLong inFrames = new AtomicLong();
+        final AtomicLong inBytes = new AtomicLong();
+        final AtomicLong outFrames = new AtomicLong();
+        final AtomicLong outBytes = new AtomicLong();
+
+        Destination snapshot(String destination) {
+            return new Destination(destination, inFrames.get(), inBytes.get(), outFrames.get(), outBytes.get());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Completable;
+import ua.naiksoftware.stomp.dto.StompCommand;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * A group of sends applied by the broker together, see
+ * <a href="https://stomp.github.io/stomp-specification-1.2.html#BEGIN">BEGIN</a>.
+ * <p>
+ * Sends are kept on the client until {@link #commit()}, which writes BEGIN, the sends and COMMIT
+ * in one write. Nothing reaches the broker for an aborted transaction.
+ * Not thread safe, a transaction is meant to be built by one thread.
+ */
+public class StompTransaction {
+
+    private final StompClient client;
+    private final String id;
+    private final List<StompMessage> frames = new ArrayList<>();
+    private int sends;
+    private boolean finished;
+
+    StompTransaction(@Nonnull StompClient client, @Nonnull String id) {
+        this.client = client;
+        this.id = id;
+        frames.add(new StompMessage(StompCommand.BEGIN, transactionHeader(), null));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public StompTransaction send(@Nonnull String destination, String data) {
+        List<StompHeader> headers = new ArrayList<>(2);
+        headers.add(new StompHeader(StompHeader.DESTINATION, destination));
+        headers.add(new StompHeader(StompHeader.TRANSACTION, id));
+        return add(new StompMessage(StompCommand.SEND, headers, data));
+    }
+
+    /**
+     * @param message a SEND frame with a text payload, the transaction header is added
+     */
+    public StompTransaction send(@Nonnull StompMessage message) {
+        if (!StompCommand.SEND.equals(message.getStompCommand())) {
+            throw new IllegalArgumentException("Only SEND frames can be sent in a transaction");
+        }
+        if (message.isBinary()) {
+            throw new IllegalArgumentException("Binary messages can not be sent in a transaction");
+        }
+        List<StompHeader> headers = new ArrayList<>(message.getStompHeaders().size() + 1);
+        headers.addAll(message.getStompHeaders());
+        headers.add(new StompHeader(StompHeader.TRANSACTION, id));
+        return add(new StompMessage(StompCommand.SEND, headers, message.getPayload()));
+    }
+
+    /**
+     * @return count of sends in the transaction
+     */
+    public int size() {
+        return sends;
+    }
+
+    /**
+     * Writes the transaction. With {@link StompClient#withReceipts} completes when the broker
+     * confirms the COMMIT, otherwise when it is written.
+     */
+    public Completable commit() {
+        if (finished) return Completable.error(new IllegalStateException("Transaction " + id + " is finished"));
+        finished = true;
+        frames.add(new StompMessage(StompCommand.COMMIT, transactionHeader(), null));
+        return client.sendTransaction(this, frames);
+    }
+
+    /**
+     * Drops the sends, nothing was written yet.
+     */
+    public void abort() {
+        finished = true;
+        frames.clear();
+    }
+
+    StompMessage abortFrame() {
+        return new StompMessage(StompCommand.ABORT, transactionHeader(), null);
+    }
+
+    private StompTransaction add(StompMessage message) {
+        if (finished) throw new IllegalStateException("Transaction " + id + " is finished");
+        frames.add(message);
+        sends++;
+        return this;
+    }
+
+    private List<StompHeader> transactionHeader() {
+        return Collections.singletonList(new StompHeader(StompHeader.TRANSACTION, id));
+    }
+
+    /**
+     * Builds a transaction, see {@link StompClient#transaction}.
+     */
+    public interface Body {
+        void run(StompTransaction transaction) throws Exception;
+    }
+}
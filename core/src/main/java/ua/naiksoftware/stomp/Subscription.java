@@ -0,0 +1,160 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.subjects.PublishSubject;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * Client side state of one SUBSCRIBE: its id, destination and the stream routed messages go to.
+ */
+class Subscription {
+
+    private final String id;
+    private final String destination;
+    @Nullable
+    private final List<StompHeader> headers;
+    private final BackpressureConfig backpressure;
+    private final AckMode ackMode;
+    private final PublishSubject<StompMessage> messages;
+    private final AtomicLong overflowCount = new AtomicLong();
+    // AckMode.CLIENT: ack ids of the routed messages not covered by an ACK yet, in routing order
+    private final LinkedHashSet<String> unacked = new LinkedHashSet<>();
+    private Flowable<StompMessage> flowable;
+    private volatile boolean subscribed;
+
+    Subscription(@Nonnull String id, @Nonnull String destination, @Nullable List<StompHeader> headers,
+                 @Nonnull BackpressureConfig backpressure, @Nonnull AckMode ackMode) {
+        this.id = id;
+        this.destination = destination;
+        this.headers = headers;
+        this.backpressure = backpressure;
+        this.ackMode = ackMode;
+        this.messages = PublishSubject.create();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getDestination() {
+        return destination;
+    }
+
+    @Nullable
+    List<StompHeader> getHeaders() {
+        return headers;
+    }
+
+    AckMode getAckMode() {
+        return ackMode;
+    }
+
+    /**
+     * Routed messages, without any buffer. Every subscriber must request unbounded,
+     * see {@link #buffered}.
+     */
+    Flowable<StompMessage> getMessages() {
+        return messages.toFlowable(BackpressureStrategy.MISSING);
+    }
+
+    /**
+     * Gives every subscriber of the shared messages its own buffer according to the
+     * {@link BackpressureConfig}, so a slow subscriber neither holds back the others nor
+     * lets the buffer of the sharing operator take more than the limits.
+     */
+    Flowable<StompMessage> buffered(Flowable<StompMessage> shared) {
+        if (backpressure.isUnbounded()) {
+            return shared.onBackpressureBuffer();
+        }
+        return shared.lift(new BoundedBufferOperator<>(backpressure, StompMessage::getPayloadLength, overflowCount));
+    }
+
+    /**
+     * @return how many times the buffer overflowed
+     */
+    long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * Must be set before the subscription is registered in {@link SubscriptionRouter}.
+     */
+    void setFlowable(Flowable<StompMessage> flowable) {
+        this.flowable = flowable;
+    }
+
+    Flowable<StompMessage> getFlowable() {
+        return flowable;
+    }
+
+    /**
+     * @return true once the SUBSCRIBE frame was sent, until the UNSUBSCRIBE
+     */
+    boolean isSubscribed() {
+        return subscribed;
+    }
+
+    void setSubscribed(boolean subscribed) {
+        this.subscribed = subscribed;
+    }
+
+    /**
+     * Called in the order messages arrive, before they may be delivered on parallel lanes.
+     */
+    void onRouted(StompMessage message) {
+        if (ackMode != AckMode.CLIENT) return;
+        String ackId = ackId(message);
+        if (ackId == null) return;
+        synchronized (unacked) {
+            unacked.add(ackId);
+        }
+    }
+
+    /**
+     * Marks the message and the ones routed before it as acknowledged, as a cumulative ACK does.
+     * Messages are held until then, so a topic that is never acknowledged keeps the ids of
+     * the unacknowledged messages, as many as the broker delivers.
+     *
+     * @return false if an ACK of a later message covers it already, so its ACK would move the
+     * acknowledged position back
+     */
+    boolean acknowledgeUpTo(StompMessage message) {
+        if (ackMode != AckMode.CLIENT) return true;
+        String ackId = ackId(message);
+        if (ackId == null) return true;
+        synchronized (unacked) {
+            if (!unacked.contains(ackId)) return false;
+            Iterator<String> ids = unacked.iterator();
+            while (!ackId.equals(ids.next())) ids.remove();
+            ids.remove();
+            return true;
+        }
+    }
+
+    /**
+     * @return the STOMP 1.2 ack header, or message-id for STOMP 1.1
+     */
+    @Nullable
+    static String ackId(StompMessage message) {
+        String ackId = message.findHeader(StompHeader.ACK);
+        return ackId != null ? ackId : message.findHeader(StompHeader.MESSAGE_ID);
+    }
+
+    void deliver(StompMessage message) {
+        messages.onNext(message);
+    }
+
+    void complete() {
+        messages.onComplete();
+    }
+}
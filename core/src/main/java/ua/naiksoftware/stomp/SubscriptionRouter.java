@@ -0,0 +1,190 @@
+package ua.naiksoftware.stomp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ua.naiksoftware.stomp.dto.StompCommand;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+import ua.naiksoftware.stomp.pathmatcher.IndexedPathMatcher;
+import ua.naiksoftware.stomp.pathmatcher.PathMatcher;
+import ua.naiksoftware.stomp.pathmatcher.SimplePathMatcher;
+
+/**
+ * Registry of active subscriptions and dispatcher of inbound MESSAGE frames.
+ * <p>
+ * Frames are routed by their {@code subscription} header with a single hash lookup. Only frames
+ * without that header fall back to the destination index, matched with the client {@link PathMatcher}.
+ * An {@link IndexedPathMatcher} is kept in sync with the registered destinations.
+ */
+class SubscriptionRouter {
+
+    private volatile PathMatcher pathMatcher = new SimplePathMatcher();
+    @Nullable
+    private volatile DispatchLanes lanes;
+
+    private final ConcurrentHashMap<String, Subscription> byDestination = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Subscription> byId = new ConcurrentHashMap<>();
+
+    /**
+     * Atomically registers the subscription for its destination.
+     *
+     * @return already registered subscription for the same destination, or the given one
+     */
+    @Nonnull
+    Subscription register(@Nonnull Subscription subscription) {
+        Subscription existing = byDestination.putIfAbsent(subscription.getDestination(), subscription);
+        if (existing != null) return existing;
+        byId.put(subscription.getId(), subscription);
+        indexPath(subscription.getDestination());
+        return subscription;
+    }
+
+    /**
+     * Makes sure the subscription receives messages by its id, e.g. when its stream is resubscribed
+     * after it was unregistered.
+     */
+    void activate(@Nonnull Subscription subscription) {
+        byId.put(subscription.getId(), subscription);
+        if (byDestination.putIfAbsent(subscription.getDestination(), subscription) == null) {
+            indexPath(subscription.getDestination());
+        }
+    }
+
+    /**
+     * @return true if the subscription was registered
+     */
+    boolean unregister(@Nonnull Subscription subscription) {
+        boolean removed = byId.remove(subscription.getId(), subscription);
+        if (byDestination.remove(subscription.getDestination(), subscription)) {
+            unindexPath(subscription.getDestination());
+            return true;
+        }
+        return removed;
+    }
+
+    @Nullable
+    Subscription findByDestination(String destination) {
+        return byDestination.get(destination);
+    }
+
+    @Nullable
+    Subscription findById(String id) {
+        return byId.get(id);
+    }
+
+    Map<String, Long> overflowCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Subscription subscription : byDestination.values()) {
+            counts.put(subscription.getDestination(), subscription.getOverflowCount());
+        }
+        return counts;
+    }
+
+    /**
+     * @return subscriptions the server knows about, to subscribe them again after a reconnect
+     */
+    List<Subscription> subscribed() {
+        List<Subscription> subscribed = new ArrayList<>();
+        for (Subscription subscription : byId.values()) {
+            if (subscription.isSubscribed()) subscribed.add(subscription);
+        }
+        return subscribed;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * Unregisters all subscriptions and completes their streams.
+     */
+    void completeAll() {
+        DispatchLanes lanes = this.lanes;
+        for (Subscription subscription : byId.values()) {
+            unregister(subscription);
+            if (lanes != null) {
+                lanes.complete(subscription);
+            } else {
+                subscription.complete();
+            }
+        }
+    }
+
+    /**
+     * @param lanes where to deliver messages, null to deliver them on the calling thread
+     */
+    void setLanes(@Nullable DispatchLanes lanes) {
+        this.lanes = lanes;
+    }
+
+    synchronized void setPathMatcher(@Nonnull PathMatcher pathMatcher) {
+        PathMatcher previous = this.pathMatcher;
+        this.pathMatcher = pathMatcher;
+        for (String destination : byDestination.keySet()) {
+            if (previous instanceof IndexedPathMatcher) ((IndexedPathMatcher) previous).removePath(destination);
+            if (pathMatcher instanceof IndexedPathMatcher) ((IndexedPathMatcher) pathMatcher).addPath(destination);
+        }
+    }
+
+    private void indexPath(String destination) {
+        PathMatcher matcher = pathMatcher;
+        if (matcher instanceof IndexedPathMatcher) ((IndexedPathMatcher) matcher).addPath(destination);
+    }
+
+    private void unindexPath(String destination) {
+        PathMatcher matcher = pathMatcher;
+        if (matcher instanceof IndexedPathMatcher) ((IndexedPathMatcher) matcher).removePath(destination);
+    }
+
+    void dispatch(@Nonnull StompMessage message) {
+        if (!StompCommand.MESSAGE.equals(message.getStompCommand())) return;
+
+        String subscriptionId = message.findHeader(StompHeader.SUBSCRIPTION);
+        if (subscriptionId != null) {
+            Subscription subscription = byId.get(subscriptionId);
+            if (subscription != null) deliver(subscription, message);
+            return;
+        }
+
+        PathMatcher pathMatcher = this.pathMatcher;
+        if (pathMatcher instanceof SimplePathMatcher) {
+            String destination = message.findHeader(StompHeader.DESTINATION);
+            Subscription subscription = destination != null ? byDestination.get(destination) : null;
+            if (subscription != null) deliver(subscription, message);
+            return;
+        }
+
+        if (pathMatcher instanceof IndexedPathMatcher) {
+            String destination = message.findHeader(StompHeader.DESTINATION);
+            if (destination == null) return;
+            for (String path : ((IndexedPathMatcher) pathMatcher).matchingPaths(destination)) {
+                Subscription subscription = byDestination.get(path);
+                if (subscription != null) deliver(subscription, message);
+            }
+            return;
+        }
+
+        for (Subscription subscription : byDestination.values()) {
+            if (pathMatcher.matches(subscription.getDestination(), message)) {
+                deliver(subscription, message);
+            }
+        }
+    }
+
+    private void deliver(Subscription subscription, StompMessage message) {
+        subscription.onRouted(message);
+        DispatchLanes lanes = this.lanes;
+        if (lanes != null) {
+            lanes.deliver(subscription, message);
+        } else {
+            subscription.deliver(message);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Reads a {@link String} or a {@link CharBuffer} view in place, unlike {@link java.io.StringReader}
+ * which needs the chars as one String.
+ */
+final class CharSequenceReader extends Reader {
+
+    private final CharSequence chars;
+    private int position;
+
+    CharSequenceReader(@Nonnull CharSequence chars) {
+        this.chars = chars;
+    }
+
+    @Override
+    public int read(@Nonnull char[] buffer, int offset, int length) {
+        if (length == 0) return 0;
+        if (position >= chars.length()) return -1;
+        int count = Math.min(length, chars.length() - position);
+        if (chars instanceof String) {
+            ((String) chars).getChars(position, position + count, buffer, offset);
+        } else if (chars instanceof CharBuffer) {
+            CharBuffer view = ((CharBuffer) chars).duplicate();
+            view.position(view.position() + position);
+            view.get(buffer, offset, count);
+        } else {
+            for (int i = 0; i < count; i++) buffer[offset + i] = chars.charAt(position + i);
+        }
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long count) {
+        int skipped = (int) Math.max(0, Math.min(count, chars.length() - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,99 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Parsed text frame which decoded only its routing headers, see {@link StompDecoder}.
+ * The other headers are decoded and the body is cut out of the received data on first access,
+ * so frames dropped before anyone reads them cost a single scan.
+ * <p>
+ * Until then the message keeps the whole received string, which may hold other frames of a batch.
+ */
+final class LazyStompMessage extends StompMessage {
+
+    private final String data;
+    private final int headersStart;
+    private final int headersEnd;
+    private final int bodyStart;
+    private final int bodyEnd;
+    @Nullable
+    private volatile StompHeaders allHeaders;
+    @Nullable
+    private volatile String payload;
+
+    /**
+     * @param routingHeaders the headers {@link #isRouting(String)} accepts
+     */
+    LazyStompMessage(String command, @Nonnull StompHeaders routingHeaders, @Nonnull String data,
+                     int headersStart, int headersEnd, int bodyStart, int bodyEnd) {
+        super(command, routingHeaders, null, null);
+        this.data = data;
+        this.headersStart = headersStart;
+        this.headersEnd = headersEnd;
+        this.bodyStart = bodyStart;
+        this.bodyEnd = bodyEnd;
+    }
+
+    /**
+     * Headers decoded up front: what the subscription router, path matchers and the decoder itself need.
+     */
+    static boolean isRouting(@Nullable String canonicalKey) {
+        return canonicalKey == StompHeader.DESTINATION
+                || canonicalKey == StompHeader.SUBSCRIPTION
+                || canonicalKey == StompHeader.CONTENT_LENGTH;
+    }
+
+    @Nullable
+    @Override
+    public String findHeader(String key) {
+        if (StompHeader.DESTINATION.equals(key) || StompHeader.SUBSCRIPTION.equals(key)
+                || StompHeader.CONTENT_LENGTH.equals(key)) {
+            return super.headers().get(key);
+        }
+        return headers().get(key);
+    }
+
+    @Override
+    StompHeaders headers() {
+        StompHeaders headers = allHeaders;
+        if (headers == null) {
+            headers = StompDecoder.decodeHeaders(data, headersStart, headersEnd, true);
+            allHeaders = headers;
+        }
+        return headers;
+    }
+
+    @Override
+    public String getPayload() {
+        String payload = this.payload;
+        if (payload == null && bodyEnd > bodyStart) {
+            payload = data.substring(bodyStart, bodyEnd);
+            this.payload = payload;
+        }
+        return payload;
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getPayloadChars() {
+        String payload = this.payload;
+        if (payload != null) return payload;
+        return bodyEnd > bodyStart ? CharBuffer.wrap(data, bodyStart, bodyEnd) : null;
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getPayloadBytes() {
+        CharSequence chars = getPayloadChars();
+        return chars != null ? UTF_8.encode(CharBuffer.wrap(chars)).asReadOnlyBuffer() : null;
+    }
+
+    @Override
+    int countPayloadLength() {
+        return StompFrameEncoder.utf8Length(data, bodyStart, bodyEnd);
+    }
+}
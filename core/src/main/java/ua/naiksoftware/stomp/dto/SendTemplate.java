@@ -0,0 +1,70 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Precompiled command and headers of SEND frames to one destination, for publishing at a high rate
+ * with a {@link StompFrameEncoder}. Header keys and values are escaped once, here.
+ * <p>
+ * Immutable, one template may be shared by any number of threads and encoders.
+ */
+public final class SendTemplate {
+
+    private final String destination;
+    private final List<StompHeader> headers;
+    // "SEND\n" and the escaped header lines, without content-length and the blank line
+    final byte[] head;
+
+    private SendTemplate(String destination, List<StompHeader> headers) {
+        this.destination = destination;
+        this.headers = headers;
+        StringBuilder builder = new StringBuilder();
+        builder.append(StompCommand.SEND).append('\n');
+        for (StompHeader header : headers) {
+            StompMessage.appendEscaped(builder, header.getKey());
+            builder.append(':');
+            StompMessage.appendEscaped(builder, header.getValue());
+            builder.append('\n');
+        }
+        head = builder.toString().getBytes(StompMessage.UTF_8);
+    }
+
+    public static SendTemplate of(@Nonnull String destination) {
+        return of(destination, null);
+    }
+
+    /**
+     * @param headers sent with every frame after the destination. content-length is computed per frame,
+     *                so a content-length header here is ignored
+     */
+    public static SendTemplate of(@Nonnull String destination, @Nullable List<StompHeader> headers) {
+        List<StompHeader> all = new ArrayList<>();
+        all.add(new StompHeader(StompHeader.DESTINATION, destination));
+        if (headers != null) {
+            for (StompHeader header : headers) {
+                if (!StompHeader.CONTENT_LENGTH.equals(header.getKey())) all.add(header);
+            }
+        }
+        return new SendTemplate(destination, Collections.unmodifiableList(all));
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public List<StompHeader> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * The same frame as a {@link StompMessage}, e.g. for providers without binary messages.
+     */
+    public StompMessage toMessage(@Nullable String payload) {
+        return new StompMessage(StompCommand.SEND, headers, payload);
+    }
+}
@@ -11,6 +11,13 @@ public class StompCommand {
     public static final String MESSAGE = "MESSAGE";
     public static final String SUBSCRIBE = "SUBSCRIBE";
     public static final String UNSUBSCRIBE = "UNSUBSCRIBE";
+    public static final String ACK = "ACK";
+    public static final String NACK = "NACK";
+    public static final String BEGIN = "BEGIN";
+    public static final String COMMIT = "COMMIT";
+    public static final String ABORT = "ABORT";
+    public static final String RECEIPT = "RECEIPT";
+    public static final String ERROR = "ERROR";
 
     public static final String UNKNOWN = "UNKNOWN";
 }
@@ -0,0 +1,431 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Single-pass STOMP 1.2 frame decoder.
+ * <p>
+ * Text MESSAGE frames are decoded lazily: their routing headers up front, the other headers
+ * and the body on first access, see {@link LazyStompMessage}.
+ * <p>
+ * Walks the frame once by index: no regex, no {@link java.util.Scanner}, and substrings are
+ * only cut for header values, the body and keys other than the {@link StompHeader} constants.
+ * <p>
+ * Binary frames are decoded straight from the {@link ByteBuffer}, the body is a slice of it.
+ * <p>
+ * One WebSocket message may carry several NUL-terminated frames, see {@link #decodeAll(String)}.
+ *
+ * @see <a href="http://stomp.github.io/stomp-specification-1.2.html#STOMP_Frames">The STOMP spec</a>
+ */
+final class StompDecoder {
+
+    private static final String HEART_BEAT_PAYLOAD = "\n";
+
+    /**
+     * Shared instance returned for EOL-only heart-beat frames, so that they allocate nothing.
+     */
+    static final StompMessage HEART_BEAT = new StompMessage(StompCommand.UNKNOWN, null, HEART_BEAT_PAYLOAD);
+
+    private StompDecoder() {
+    }
+
+    @Nonnull
+    static StompMessage decode(@Nullable String data) {
+        if (data == null) {
+            return new StompMessage(StompCommand.UNKNOWN, null, null);
+        }
+        return decode(data, 0, null);
+    }
+
+    /**
+     * Decodes every frame of a batched message, the common single frame case
+     * costs no more than {@link #decode(String)}.
+     */
+    @Nonnull
+    static List<StompMessage> decodeAll(@Nullable String data) {
+        if (data == null) return Collections.singletonList(decode((String) null));
+
+        int[] next = new int[1];
+        StompMessage first = decode(data, 0, next);
+        if (isBlank(data, next[0], data.length())) return Collections.singletonList(first);
+
+        List<StompMessage> messages = new ArrayList<>();
+        messages.add(first);
+        do {
+            messages.add(decode(data, next[0], next));
+        } while (!isBlank(data, next[0], data.length()));
+        return messages;
+    }
+
+    @Nonnull
+    static List<StompMessage> decodeAll(@Nonnull ByteBuffer data) {
+        int[] next = new int[1];
+        StompMessage first = decode(data, data.position(), next);
+        if (isBlank(data, next[0], data.limit())) return Collections.singletonList(first);
+
+        List<StompMessage> messages = new ArrayList<>();
+        messages.add(first);
+        do {
+            messages.add(decode(data, next[0], next));
+        } while (!isBlank(data, next[0], data.limit()));
+        return messages;
+    }
+
+    /**
+     * @param next if not null, receives the index right after the decoded frame
+     */
+    private static StompMessage decode(String data, int start, @Nullable int[] next) {
+        final int length = data.length();
+        if (next != null) next[0] = length;
+        int pos = skipEols(data, start, length);
+        if (pos == length) {
+            return length > start ? HEART_BEAT : new StompMessage(StompCommand.UNKNOWN, null, data);
+        }
+        if (isBlank(data, pos, length)) {
+            return new StompMessage(StompCommand.UNKNOWN, null, data);
+        }
+
+        int lineEnd = lineEnd(data, pos, length);
+        String command = command(data, pos, trimCr(data, pos, lineEnd));
+        pos = lineEnd + 1;
+
+        // CONNECT and CONNECTED frames are not escaped, to stay compatible with STOMP 1.0
+        boolean unescape = !StompCommand.CONNECT.equals(command) && !StompCommand.CONNECTED.equals(command);
+        // MESSAGE frames are the bulk of the traffic and often dropped unread: only their routing
+        // headers are decoded here, the rest on first access, see LazyStompMessage
+        boolean lazy = StompCommand.MESSAGE.equals(command);
+        StompHeaders headers = new StompHeaders(lazy ? 2 : 8);
+        int headersStart = pos;
+        int headersEnd = -1;
+        int contentLength = -1;
+        boolean contentLengthSeen = false;
+
+        while (pos < length) {
+            lineEnd = lineEnd(data, pos, length);
+            int contentEnd = trimCr(data, pos, lineEnd);
+            if (contentEnd == pos) {
+                // empty line separates headers from the body
+                headersEnd = pos;
+                pos = lineEnd + 1;
+                break;
+            }
+            if (data.charAt(pos) == '\u0000') {
+                // frame terminated without a body
+                headersEnd = pos;
+                if (next != null) next[0] = pos + 1;
+                pos = length;
+                break;
+            }
+
+            int colon = data.indexOf(':', pos);
+            if (colon < 0 || colon > contentEnd) colon = contentEnd;
+            String key = StompHeaders.canonicalKey(data, pos, colon);
+            if (!lazy || LazyStompMessage.isRouting(key)) {
+                if (key == null) key = unescape ? unescape(data, pos, colon) : data.substring(pos, colon);
+                String value = colon < contentEnd
+                        ? (unescape ? unescape(data, colon + 1, contentEnd) : data.substring(colon + 1, contentEnd))
+                        : "";
+                headers.add(key, value);
+
+                // if a header is repeated, only the first entry is used
+                if (!contentLengthSeen && StompHeader.CONTENT_LENGTH == key) {
+                    contentLengthSeen = true;
+                    contentLength = parseLength(value);
+                }
+            }
+            pos = lineEnd + 1;
+        }
+        if (headersEnd < 0) headersEnd = length;
+
+        int bodyStart = pos;
+        int bodyEnd = pos;
+        if (pos < length) {
+            bodyEnd = contentLength >= 0
+                    ? charsForUtf8Length(data, pos, length, contentLength)
+                    : nulOrEnd(data, pos, length);
+            if (next != null) next[0] = Math.min(bodyEnd + 1, length);
+        }
+
+        if (lazy) {
+            return new LazyStompMessage(command, headers, data, headersStart, headersEnd, bodyStart, bodyEnd);
+        }
+        String payload = bodyEnd > bodyStart ? data.substring(bodyStart, bodyEnd) : null;
+        return new StompMessage(command, headers, payload, null);
+    }
+
+    /**
+     * Decodes all header lines between start and end, for {@link LazyStompMessage}.
+     */
+    @Nonnull
+    static StompHeaders decodeHeaders(String data, int start, int end, boolean unescape) {
+        StompHeaders headers = new StompHeaders(8);
+        int pos = start;
+        while (pos < end) {
+            int lineEnd = Math.min(lineEnd(data, pos, end), end);
+            int contentEnd = trimCr(data, pos, lineEnd);
+            if (contentEnd > pos) {
+                int colon = data.indexOf(':', pos);
+                if (colon < 0 || colon > contentEnd) colon = contentEnd;
+                String key = StompHeaders.canonicalKey(data, pos, colon);
+                if (key == null) key = unescape ? unescape(data, pos, colon) : data.substring(pos, colon);
+                String value = colon < contentEnd
+                        ? (unescape ? unescape(data, colon + 1, contentEnd) : data.substring(colon + 1, contentEnd))
+                        : "";
+                headers.add(key, value);
+            }
+            pos = lineEnd + 1;
+        }
+        return headers;
+    }
+
+    @Nonnull
+    static StompMessage decode(@Nonnull ByteBuffer data) {
+        return decode(data, data.position(), null);
+    }
+
+    private static StompMessage decode(ByteBuffer data, int start, @Nullable int[] next) {
+        final int limit = data.limit();
+        if (next != null) next[0] = limit;
+        int pos = start;
+        while (pos < limit && (data.get(pos) == '\n' || data.get(pos) == '\r')) pos++;
+        if (pos == limit) {
+            return limit > start ? HEART_BEAT : new StompMessage(StompCommand.UNKNOWN, null, null);
+        }
+
+        int lineEnd = lineEnd(data, pos, limit);
+        int commandEnd = trimCr(data, pos, lineEnd);
+        String command = commandEnd > pos ? string(data, pos, commandEnd) : StompCommand.UNKNOWN;
+        String knownCommand = command(command, 0, command.length());
+        pos = lineEnd + 1;
+
+        boolean unescape = !StompCommand.CONNECT.equals(command) && !StompCommand.CONNECTED.equals(command);
+        StompHeaders headers = new StompHeaders(8);
+        int contentLength = -1;
+        boolean contentLengthSeen = false;
+
+        while (pos < limit) {
+            lineEnd = lineEnd(data, pos, limit);
+            int contentEnd = trimCr(data, pos, lineEnd);
+            if (contentEnd == pos) {
+                pos = lineEnd + 1;
+                break;
+            }
+            if (data.get(pos) == 0) {
+                if (next != null) next[0] = pos + 1;
+                pos = limit;
+                break;
+            }
+
+            String line = string(data, pos, contentEnd);
+            int colon = line.indexOf(':');
+            if (colon < 0) colon = line.length();
+            String key = StompHeaders.canonicalKey(line, 0, colon);
+            if (key == null) key = unescape ? unescape(line, 0, colon) : line.substring(0, colon);
+            String value = colon < line.length()
+                    ? (unescape ? unescape(line, colon + 1, line.length()) : line.substring(colon + 1))
+                    : "";
+            headers.add(key, value);
+
+            if (!contentLengthSeen && StompHeader.CONTENT_LENGTH == key) {
+                contentLengthSeen = true;
+                contentLength = parseLength(value);
+            }
+            pos = lineEnd + 1;
+        }
+
+        ByteBuffer payload = null;
+        if (pos < limit) {
+            int bodyEnd = contentLength >= 0 ? Math.min(pos + contentLength, limit) : nulOrEnd(data, pos, limit);
+            if (bodyEnd > pos) {
+                ByteBuffer view = data.duplicate();
+                view.limit(bodyEnd);
+                view.position(pos);
+                payload = view.slice();
+            }
+            if (next != null) next[0] = Math.min(bodyEnd + 1, limit);
+        }
+
+        return new StompMessage(knownCommand, headers, null, payload);
+    }
+
+    private static boolean isBlank(ByteBuffer data, int pos, int limit) {
+        for (int i = pos; i < limit; i++) {
+            if ((data.get(i) & 0xFF) > ' ') return false;
+        }
+        return true;
+    }
+
+    private static int lineEnd(ByteBuffer data, int pos, int limit) {
+        for (int i = pos; i < limit; i++) {
+            if (data.get(i) == '\n') return i;
+        }
+        return limit;
+    }
+
+    private static int trimCr(ByteBuffer data, int start, int end) {
+        return end > start && data.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static int nulOrEnd(ByteBuffer data, int pos, int limit) {
+        for (int i = pos; i < limit; i++) {
+            if (data.get(i) == 0) return i;
+        }
+        return limit;
+    }
+
+    /**
+     * Decodes UTF-8 bytes, with a fast path for ASCII, which covers nearly all commands and headers.
+     */
+    private static String string(ByteBuffer data, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            byte b = data.get(i);
+            if (b < 0) {
+                ByteBuffer view = data.duplicate();
+                view.limit(end);
+                view.position(start);
+                return StompMessage.UTF_8.decode(view).toString();
+            }
+            chars[i - start] = (char) b;
+        }
+        return new String(chars);
+    }
+
+    private static int skipEols(String data, int pos, int length) {
+        while (pos < length) {
+            char c = data.charAt(pos);
+            if (c != '\n' && c != '\r') break;
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isBlank(String data, int pos, int length) {
+        for (int i = pos; i < length; i++) {
+            if (data.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+
+    private static int lineEnd(String data, int pos, int length) {
+        int end = data.indexOf('\n', pos);
+        return end < 0 ? length : end;
+    }
+
+    private static int trimCr(String data, int start, int end) {
+        return end > start && data.charAt(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static int nulOrEnd(String data, int pos, int length) {
+        int end = data.indexOf('\u0000', pos);
+        return end < 0 ? length : end;
+    }
+
+    /**
+     * Returns the canonical constant for known commands so that no substring is allocated for them.
+     */
+    private static String command(String data, int start, int end) {
+        int length = end - start;
+        if (length <= 0) return StompCommand.UNKNOWN;
+        switch (data.charAt(start)) {
+            case 'M':
+                if (matches(data, start, length, StompCommand.MESSAGE)) return StompCommand.MESSAGE;
+                break;
+            case 'C':
+                if (matches(data, start, length, StompCommand.CONNECTED)) return StompCommand.CONNECTED;
+                if (matches(data, start, length, StompCommand.CONNECT)) return StompCommand.CONNECT;
+                break;
+            case 'S':
+                if (matches(data, start, length, StompCommand.SEND)) return StompCommand.SEND;
+                if (matches(data, start, length, StompCommand.SUBSCRIBE)) return StompCommand.SUBSCRIBE;
+                break;
+            case 'U':
+                if (matches(data, start, length, StompCommand.UNSUBSCRIBE)) return StompCommand.UNSUBSCRIBE;
+                break;
+        }
+        return data.substring(start, end);
+    }
+
+    private static boolean matches(String data, int start, int length, String expected) {
+        return expected.length() == length && data.regionMatches(start, expected, 0, length);
+    }
+
+    /**
+     * Decodes the \r, \n, \c and \\ escape sequences. Undefined sequences are kept as is.
+     */
+    private static String unescape(String data, int start, int end) {
+        int escape = data.indexOf('\\', start);
+        if (escape < 0 || escape >= end) return data.substring(start, end);
+
+        StringBuilder builder = new StringBuilder(end - start);
+        builder.append(data, start, escape);
+        for (int i = escape; i < end; i++) {
+            char c = data.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                char next = data.charAt(i + 1);
+                switch (next) {
+                    case 'r':
+                        builder.append('\r');
+                        i++;
+                        continue;
+                    case 'n':
+                        builder.append('\n');
+                        i++;
+                        continue;
+                    case 'c':
+                        builder.append(':');
+                        i++;
+                        continue;
+                    case '\\':
+                        builder.append('\\');
+                        i++;
+                        continue;
+                }
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static int parseLength(String value) {
+        int length = value.length();
+        if (length == 0 || length > 9) return -1;
+        int result = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * content-length is given in octets, so walk the UTF-8 encoded size of the chars
+     * to find where the body ends in the decoded string.
+     */
+    private static int charsForUtf8Length(String data, int pos, int length, int byteLength) {
+        int bytes = 0;
+        int i = pos;
+        while (i < length && bytes < byteLength) {
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(data.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,160 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes SEND frames of a {@link SendTemplate} straight to UTF-8 into one reused buffer:
+ * the head is copied from the template, the payload is encoded once, and once the buffer
+ * is large enough nothing is allocated.
+ * <p>
+ * Not thread safe. The returned buffer is overwritten by the next call, so it must be written
+ * to the socket, or copied, before encoding the next frame.
+ */
+public final class StompFrameEncoder {
+
+    private static final byte[] CONTENT_LENGTH = (StompHeader.CONTENT_LENGTH + ':').getBytes(StompMessage.UTF_8);
+    // content-length digits, the end of the header line, the blank line and the NUL
+    private static final int FRAME_OVERHEAD = CONTENT_LENGTH.length + 10 + 3;
+
+    private byte[] buffer;
+    private ByteBuffer view;
+    private int payloadLength;
+
+    public StompFrameEncoder() {
+        this(1024);
+    }
+
+    public StompFrameEncoder(int initialCapacity) {
+        buffer = new byte[initialCapacity];
+        view = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * @param payload encoded as UTF-8, may be null
+     * @return the frame, valid until the next call
+     */
+    @Nonnull
+    public ByteBuffer encode(@Nonnull SendTemplate template, @Nullable CharSequence payload) {
+        int payloadLength = payload != null ? utf8Length(payload) : 0;
+        int pos = head(template, payloadLength);
+        if (payload != null) pos = putUtf8(payload, pos);
+        return frame(pos);
+    }
+
+    /**
+     * @param payload bytes between position and limit, left unchanged. May be null
+     * @return the frame, valid until the next call
+     */
+    @Nonnull
+    public ByteBuffer encode(@Nonnull SendTemplate template, @Nullable ByteBuffer payload) {
+        int payloadLength = payload != null ? payload.remaining() : 0;
+        int pos = head(template, payloadLength);
+        if (payload != null) {
+            if (payload.hasArray()) {
+                System.arraycopy(payload.array(), payload.arrayOffset() + payload.position(), buffer, pos, payloadLength);
+            } else {
+                for (int i = 0; i < payloadLength; i++) buffer[pos + i] = payload.get(payload.position() + i);
+            }
+            pos += payloadLength;
+        }
+        return frame(pos);
+    }
+
+    /**
+     * @return payload length of the last encoded frame in bytes
+     */
+    public int payloadLength() {
+        return payloadLength;
+    }
+
+    private int head(SendTemplate template, int payloadLength) {
+        this.payloadLength = payloadLength;
+        ensureCapacity(template.head.length + FRAME_OVERHEAD + payloadLength);
+        System.arraycopy(template.head, 0, buffer, 0, template.head.length);
+        int pos = template.head.length;
+        System.arraycopy(CONTENT_LENGTH, 0, buffer, pos, CONTENT_LENGTH.length);
+        pos += CONTENT_LENGTH.length;
+        pos = putDigits(payloadLength, pos);
+        buffer[pos++] = '\n';
+        buffer[pos++] = '\n';
+        return pos;
+    }
+
+    private ByteBuffer frame(int pos) {
+        buffer[pos++] = 0;
+        view.clear();
+        view.limit(pos);
+        return view;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length >= capacity) return;
+        buffer = new byte[Math.max(capacity, buffer.length * 2)];
+        view = ByteBuffer.wrap(buffer);
+    }
+
+    private int putDigits(int value, int pos) {
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    private int putUtf8(CharSequence chars, int pos) {
+        int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced like String.getBytes does
+                buffer[pos++] = '?';
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * @return length of the chars encoded as UTF-8, counted without encoding them
+     */
+    public static int utf8Length(@Nonnull CharSequence chars) {
+        return utf8Length(chars, 0, chars.length());
+    }
+
+    static int utf8Length(CharSequence chars, int start, int end) {
+        int bytes = end - start;
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                // 4 bytes for 2 chars
+                bytes += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+}
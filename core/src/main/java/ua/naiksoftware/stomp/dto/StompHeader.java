@@ -13,6 +13,11 @@ public class StompHeader {
     public static final String MESSAGE_ID = "message-id";
     public static final String ID = "id";
     public static final String ACK = "ack";
+    public static final String CONTENT_LENGTH = "content-length";
+    public static final String TRANSACTION = "transaction";
+    public static final String RECEIPT = "receipt";
+    public static final String RECEIPT_ID = "receipt-id";
+    public static final String MESSAGE = "message";
 
     private final String mKey;
     private final String mValue;
@@ -0,0 +1,153 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact headers of a {@link StompMessage}: keys and values in parallel arrays, no {@link StompHeader}
+ * per entry. Keys of the {@link StompHeader} constants are stored as the canonical constant and the
+ * first occurrence of each is indexed, so looking up routing headers takes constant time.
+ * <p>
+ * Filled once while the message is built, read only afterwards.
+ */
+final class StompHeaders {
+
+    private static final String[] WELL_KNOWN = {
+            StompHeader.DESTINATION,
+            StompHeader.SUBSCRIPTION,
+            StompHeader.MESSAGE_ID,
+            StompHeader.ACK,
+            StompHeader.ID,
+            StompHeader.CONTENT_TYPE,
+            StompHeader.CONTENT_LENGTH,
+            StompHeader.RECEIPT,
+            StompHeader.RECEIPT_ID,
+            StompHeader.TRANSACTION,
+            StompHeader.MESSAGE,
+            StompHeader.VERSION,
+            StompHeader.HEART_BEAT,
+    };
+
+    static final StompHeaders EMPTY = new StompHeaders(0);
+
+    private String[] keys;
+    private String[] values;
+    private int size;
+    // position + 1 of the first occurrence of each well-known key, 0 if absent
+    private final int[] known = new int[WELL_KNOWN.length];
+
+    StompHeaders(int capacity) {
+        keys = new String[capacity];
+        values = new String[capacity];
+    }
+
+    @Nonnull
+    static StompHeaders of(@Nullable List<StompHeader> headers) {
+        if (headers == null || headers.isEmpty()) return EMPTY;
+        StompHeaders compact = new StompHeaders(headers.size());
+        for (StompHeader header : headers) compact.add(header.getKey(), header.getValue());
+        return compact;
+    }
+
+    void add(@Nonnull String key, String value) {
+        if (size == keys.length) {
+            int capacity = Math.max(8, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        int wellKnown = wellKnown(key);
+        if (wellKnown >= 0) {
+            key = WELL_KNOWN[wellKnown];
+            if (known[wellKnown] == 0) known[wellKnown] = size + 1;
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * @return value of the first header with the key
+     */
+    @Nullable
+    String get(String key) {
+        int wellKnown = wellKnown(key);
+        if (wellKnown >= 0) {
+            int position = known[wellKnown];
+            return position != 0 ? values[position - 1] : null;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) return values[i];
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String keyAt(int index) {
+        return keys[index];
+    }
+
+    String valueAt(int index) {
+        return values[index];
+    }
+
+    List<StompHeader> toList() {
+        List<StompHeader> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(new StompHeader(keys[i], values[i]));
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return the canonical key constant if the region is a well-known key, else null
+     */
+    @Nullable
+    static String canonicalKey(String data, int start, int end) {
+        int length = end - start;
+        for (String key : WELL_KNOWN) {
+            if (key.length() == length && data.regionMatches(start, key, 0, length)) return key;
+        }
+        return null;
+    }
+
+    private static int wellKnown(@Nullable String key) {
+        if (key == null) return -1;
+        // same order as WELL_KNOWN
+        switch (key) {
+            case StompHeader.DESTINATION:
+                return 0;
+            case StompHeader.SUBSCRIPTION:
+                return 1;
+            case StompHeader.MESSAGE_ID:
+                return 2;
+            case StompHeader.ACK:
+                return 3;
+            case StompHeader.ID:
+                return 4;
+            case StompHeader.CONTENT_TYPE:
+                return 5;
+            case StompHeader.CONTENT_LENGTH:
+                return 6;
+            case StompHeader.RECEIPT:
+                return 7;
+            case StompHeader.RECEIPT_ID:
+                return 8;
+            case StompHeader.TRANSACTION:
+                return 9;
+            case StompHeader.MESSAGE:
+                return 10;
+            case StompHeader.VERSION:
+                return 11;
+            case StompHeader.HEART_BEAT:
+                return 12;
+            default:
+                return -1;
+        }
+    }
+}
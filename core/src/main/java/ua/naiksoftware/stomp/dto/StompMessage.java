@@ -0,0 +1,341 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Created by naik on 05.05.16.
+ */
+public class StompMessage {
+
+    public static final String TERMINATE_MESSAGE_SYMBOL = "\u0000";
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String mStompCommand;
+    private final StompHeaders mHeaders;
+    // view of mHeaders, built on first access unless given to the constructor
+    private List<StompHeader> mStompHeaders;
+    private String mPayload;
+    @Nullable
+    private final ByteBuffer mPayloadBytes;
+    // UTF-8 length of a text body, counted on first access
+    private int mPayloadLength = -1;
+    // System.nanoTime() when read from the socket, 0 if not known
+    private long mReceivedNanos;
+
+    public StompMessage(String stompCommand, List<StompHeader> stompHeaders, String payload) {
+        this(stompCommand, stompHeaders, payload, null);
+    }
+
+    private StompMessage(String stompCommand, List<StompHeader> stompHeaders, String payload, @Nullable ByteBuffer payloadBytes) {
+        this(stompCommand, StompHeaders.of(stompHeaders), payload, payloadBytes);
+        mStompHeaders = stompHeaders;
+    }
+
+    StompMessage(String stompCommand, @Nonnull StompHeaders headers, String payload, @Nullable ByteBuffer payloadBytes) {
+        mStompCommand = stompCommand;
+        mHeaders = headers;
+        mPayload = payload;
+        mPayloadBytes = payloadBytes;
+    }
+
+    /**
+     * Message with a binary body, e.g. protobuf or CBOR. The buffer is kept as is, not copied.
+     *
+     * @param payload body bytes between position and limit, may be null
+     */
+    public static StompMessage binary(String stompCommand, List<StompHeader> stompHeaders, @Nullable ByteBuffer payload) {
+        return new StompMessage(stompCommand, stompHeaders, null, payload);
+    }
+
+    /**
+     * For a parsed message the list is built on first access, prefer {@link #findHeader(String)}.
+     */
+    public List<StompHeader> getStompHeaders() {
+        if (mStompHeaders == null) {
+            StompHeaders headers = headers();
+            if (headers != StompHeaders.EMPTY) mStompHeaders = headers.toList();
+        }
+        return mStompHeaders;
+    }
+
+    /**
+     * All headers of the message.
+     */
+    StompHeaders headers() {
+        return mHeaders;
+    }
+
+    /**
+     * For a binary message the body is decoded as UTF-8 on first access.
+     */
+    public String getPayload() {
+        if (mPayload == null && mPayloadBytes != null) {
+            mPayload = UTF_8.decode(mPayloadBytes.duplicate()).toString();
+        }
+        return mPayload;
+    }
+
+    /**
+     * Body as chars, without copying it where possible: for a parsed text MESSAGE this is
+     * a view of the received frame, see {@link StompDecoder}.
+     */
+    @Nullable
+    public CharSequence getPayloadChars() {
+        return getPayload();
+    }
+
+    /**
+     * Read-only view of the body. For a binary message no bytes are copied,
+     * a text body is encoded as UTF-8.
+     */
+    @Nullable
+    public ByteBuffer getPayloadBytes() {
+        if (mPayloadBytes != null) return mPayloadBytes.asReadOnlyBuffer();
+        if (mPayload == null) return null;
+        return UTF_8.encode(mPayload).asReadOnlyBuffer();
+    }
+
+    /**
+     * Body as a stream, for bodies too large to hold as a String. A body held as bytes is read
+     * in place, see {@link #isBinary()}, a text body is encoded as UTF-8 first.
+     */
+    @Nullable
+    public InputStream getPayloadStream() {
+        ByteBuffer bytes = getPayloadBytes();
+        return bytes != null ? new ByteBufferInputStream(bytes) : null;
+    }
+
+    /**
+     * Body as a reader, for bodies too large to hold as a String. A text body is read in place,
+     * a body held as bytes is decoded from UTF-8 while reading.
+     */
+    @Nullable
+    public Reader getPayloadReader() {
+        if (mPayloadBytes != null && mPayload == null) {
+            return new InputStreamReader(new ByteBufferInputStream(mPayloadBytes), UTF_8);
+        }
+        CharSequence chars = getPayloadChars();
+        return chars != null ? new CharSequenceReader(chars) : null;
+    }
+
+    /**
+     * Body length in bytes, without decoding or copying the body. For a text body this is
+     * its UTF-8 length, counted once.
+     */
+    public int getPayloadLength() {
+        if (mPayloadBytes != null) return mPayloadBytes.remaining();
+        int length = mPayloadLength;
+        if (length < 0) {
+            length = countPayloadLength();
+            mPayloadLength = length;
+        }
+        return length;
+    }
+
+    int countPayloadLength() {
+        return mPayload != null ? StompFrameEncoder.utf8Length(mPayload) : 0;
+    }
+
+    /**
+     * @return true if the body is held as bytes, see {@link #binary(String, List, ByteBuffer)}.
+     * This is not how the message came over the WebSocket: with
+     * {@link ua.naiksoftware.stomp.StompClient#withStreamingReceive(int)} large text messages are held as bytes too
+     */
+    public boolean isBinary() {
+        return mPayloadBytes != null;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the message was read from the socket, or 0 for a message
+     * not parsed with {@link #fromBatch(String, long)}
+     */
+    public long getReceivedNanos() {
+        return mReceivedNanos;
+    }
+
+    public String getStompCommand() {
+        return mStompCommand;
+    }
+
+    /**
+     * @return value of the first header with the key. Constant time for the keys of the {@link StompHeader} constants
+     */
+    @Nullable
+    public String findHeader(String key) {
+        return headers().get(key);
+    }
+
+    @Nonnull
+    public String compile() {
+        return compile(false);
+    }
+
+    @Nonnull
+    public String compile(boolean legacyWhitespace) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(mStompCommand).append('\n');
+        appendHeaders(builder);
+        builder.append('\n');
+        String payload = getPayload();
+        if (payload != null) {
+            builder.append(payload);
+            if (legacyWhitespace) builder.append("\n\n");
+        }
+        builder.append(TERMINATE_MESSAGE_SYMBOL);
+        return builder.toString();
+    }
+
+    /**
+     * Compile to a binary frame. The body bytes are written as is and a content-length header
+     * is added if missing, so the body may contain NUL octets.
+     */
+    @Nonnull
+    public ByteBuffer compileBytes() {
+        String payload = mPayloadBytes == null ? getPayload() : null;
+        ByteBuffer body = mPayloadBytes != null ? mPayloadBytes.duplicate()
+                : payload != null ? UTF_8.encode(payload) : null;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(mStompCommand).append('\n');
+        appendHeaders(builder);
+        if (body != null && findHeader(StompHeader.CONTENT_LENGTH) == null) {
+            builder.append(StompHeader.CONTENT_LENGTH).append(':').append(body.remaining()).append('\n');
+        }
+        builder.append('\n');
+        ByteBuffer head = UTF_8.encode(builder.toString());
+
+        ByteBuffer frame = ByteBuffer.allocate(head.remaining() + (body != null ? body.remaining() : 0) + 1);
+        frame.put(head);
+        if (body != null) frame.put(body);
+        frame.put((byte) 0);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Header lines, escaped as STOMP 1.2 requires for all frames but CONNECT and CONNECTED.
+     */
+    private void appendHeaders(StringBuilder builder) {
+        StompHeaders headers = headers();
+        boolean escape = !StompCommand.CONNECT.equals(mStompCommand) && !StompCommand.CONNECTED.equals(mStompCommand);
+        for (int i = 0; i < headers.size(); i++) {
+            if (escape) {
+                appendEscaped(builder, headers.keyAt(i));
+                builder.append(':');
+                appendEscaped(builder, headers.valueAt(i));
+            } else {
+                builder.append(headers.keyAt(i)).append(':').append(headers.valueAt(i));
+            }
+            builder.append('\n');
+        }
+    }
+
+    /**
+     * Appends the value with \r, \n, : and \ escaped, see
+     * <a href="https://stomp.github.io/stomp-specification-1.2.html#Value_Encoding">Value Encoding</a>.
+     */
+    static void appendEscaped(StringBuilder builder, @Nullable String value) {
+        if (value == null) {
+            builder.append((String) null);
+            return;
+        }
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escaped;
+            switch (c) {
+                case '\\':
+                    escaped = "\\\\";
+                    break;
+                case '\n':
+                    escaped = "\\n";
+                    break;
+                case '\r':
+                    escaped = "\\r";
+                    break;
+                case ':':
+                    escaped = "\\c";
+                    break;
+                default:
+                    continue;
+            }
+            builder.append(value, start, i).append(escaped);
+            start = i + 1;
+        }
+        builder.append(value, start, length);
+    }
+
+    /**
+     * Parse a STOMP frame, see {@link StompDecoder}.
+     */
+    public static StompMessage from(@Nullable String data) {
+        return StompDecoder.decode(data);
+    }
+
+    /**
+     * Parse all STOMP frames of one message, which may carry several NUL-terminated frames.
+     */
+    @Nonnull
+    public static List<StompMessage> fromBatch(@Nullable String data) {
+        return StompDecoder.decodeAll(data);
+    }
+
+    /**
+     * Parse all binary STOMP frames of one message.
+     */
+    @Nonnull
+    public static List<StompMessage> fromBatch(@Nonnull ByteBuffer data) {
+        return StompDecoder.decodeAll(data);
+    }
+
+    /**
+     * {@link #fromBatch(String)} that stamps the frames with {@link #getReceivedNanos()}.
+     */
+    @Nonnull
+    public static List<StompMessage> fromBatch(@Nullable String data, long receivedNanos) {
+        return stamp(StompDecoder.decodeAll(data), receivedNanos);
+    }
+
+    /**
+     * {@link #fromBatch(ByteBuffer)} that stamps the frames with {@link #getReceivedNanos()}.
+     */
+    @Nonnull
+    public static List<StompMessage> fromBatch(@Nonnull ByteBuffer data, long receivedNanos) {
+        return stamp(StompDecoder.decodeAll(data), receivedNanos);
+    }
+
+    private static List<StompMessage> stamp(List<StompMessage> messages, long receivedNanos) {
+        for (int i = 0; i < messages.size(); i++) {
+            StompMessage message = messages.get(i);
+            // the heart-beat instance is shared
+            if (message != StompDecoder.HEART_BEAT) message.mReceivedNanos = receivedNanos;
+        }
+        return messages;
+    }
+
+    /**
+     * Parse a binary STOMP frame. The body is a view of the given buffer, see {@link StompDecoder}.
+     */
+    public static StompMessage from(@Nonnull ByteBuffer data) {
+        return StompDecoder.decode(data);
+    }
+
+    @Override
+    public String toString() {
+        return "StompMessage{" +
+                "command='" + mStompCommand + '\'' +
+                ", headers=" + getStompHeaders() +
+                ", payload='" + (isBinary() ? getPayloadLength() + " bytes" : getPayload()) + '\'' +
+                '}';
+    }
+}
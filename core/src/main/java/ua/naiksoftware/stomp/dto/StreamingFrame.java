@@ -0,0 +1,136 @@
+package ua.naiksoftware.stomp.dto;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * SEND frame of a {@link SendTemplate} whose body is read from a channel while the frame is read,
+ * so a large body is never held whole. Yields the command and headers, then exactly
+ * {@code contentLength} body bytes and the terminating NUL.
+ * <p>
+ * Can be read once. Closing it does not close the body channel, which belongs to the caller.
+ */
+public final class StreamingFrame implements ReadableByteChannel {
+
+    private final ByteBuffer head;
+    private final ReadableByteChannel body;
+    private final long contentLength;
+    private final long length;
+    private long bodyRead;
+    private boolean terminated;
+    private boolean open = true;
+
+    /**
+     * @param receiptId     value of a receipt header to add, may be null
+     * @param contentLength exact length of the body, reading fails if the body ends earlier
+     */
+    public StreamingFrame(@Nonnull SendTemplate template, @Nullable String receiptId,
+                          @Nonnull ReadableByteChannel body, long contentLength) {
+        if (contentLength < 0) throw new IllegalArgumentException("Content length must not be negative");
+        StringBuilder builder = new StringBuilder(64);
+        if (receiptId != null) {
+            builder.append(StompHeader.RECEIPT).append(':');
+            StompMessage.appendEscaped(builder, receiptId);
+            builder.append('\n');
+        }
+        builder.append(StompHeader.CONTENT_LENGTH).append(':').append(contentLength).append("\n\n");
+        byte[] headers = builder.toString().getBytes(StompMessage.UTF_8);
+
+        head = ByteBuffer.allocate(template.head.length + headers.length);
+        head.put(template.head).put(headers).flip();
+        this.body = body;
+        this.contentLength = contentLength;
+        length = head.remaining() + contentLength + 1;
+    }
+
+    public StreamingFrame(@Nonnull SendTemplate template, @Nullable String receiptId, @Nonnull ByteBuffer body) {
+        this(template, receiptId, new BufferChannel(body), body.remaining());
+    }
+
+    /**
+     * @return length of the whole frame in bytes
+     */
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int read(@Nonnull ByteBuffer dst) throws IOException {
+        if (!open) throw new ClosedChannelException();
+        int start = dst.position();
+
+        if (head.hasRemaining() && dst.hasRemaining()) {
+            ByteBuffer part = head.duplicate();
+            part.limit(part.position() + Math.min(part.remaining(), dst.remaining()));
+            dst.put(part);
+            head.position(part.position());
+        }
+
+        while (!head.hasRemaining() && bodyRead < contentLength && dst.hasRemaining()) {
+            int limit = dst.limit();
+            if (dst.remaining() > contentLength - bodyRead) dst.limit(dst.position() + (int) (contentLength - bodyRead));
+            int count;
+            try {
+                count = body.read(dst);
+            } finally {
+                dst.limit(limit);
+            }
+            if (count < 0) throw new EOFException("Body ended after " + bodyRead + " of " + contentLength + " bytes");
+            if (count == 0) break;
+            bodyRead += count;
+        }
+
+        if (bodyRead == contentLength && !terminated && !head.hasRemaining() && dst.hasRemaining()) {
+            dst.put((byte) 0);
+            terminated = true;
+        }
+
+        int count = dst.position() - start;
+        return count == 0 && terminated ? -1 : count;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private static final class BufferChannel implements ReadableByteChannel {
+
+        private final ByteBuffer buffer;
+
+        BufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!buffer.hasRemaining()) return -1;
+            ByteBuffer part = buffer.duplicate();
+            part.limit(part.position() + Math.min(part.remaining(), dst.remaining()));
+            dst.put(part);
+            int count = part.position() - buffer.position();
+            buffer.position(part.position());
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
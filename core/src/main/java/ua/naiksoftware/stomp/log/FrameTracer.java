@@ -0,0 +1,17 @@
+package ua.naiksoftware.stomp.log;
+
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * Structured hook which gets every frame as an object, e.g. to sample-log without
+ * formatting each frame. See {@link StompLog#setFrameTracer(FrameTracer)}.
+ * <p>
+ * Called on the socket thread for received frames and on the sending thread for sent ones,
+ * so it must be fast.
+ */
+public interface FrameTracer {
+
+    void onFrameReceived(StompMessage frame);
+
+    void onFrameSent(StompMessage frame);
+}
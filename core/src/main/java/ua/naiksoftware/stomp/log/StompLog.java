@@ -0,0 +1,85 @@
+package ua.naiksoftware.stomp.log;
+
+import javax.annotation.Nullable;
+
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+/**
+ * Static entry point for the library logging. Nothing is logged or traced by default.
+ * <p>
+ * Call sites check {@link #isDebugEnabled()} before building a message:
+ * <pre>
+ * if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Receive STOMP message: " + message);
+ * </pre>
+ * With the default no-op logger the check is a constant false after inlining.
+ * Set the logger and tracer once, before connecting; they are not volatile on purpose.
+ * <p>
+ * To log to Logcat as before, with the AndroidLogger of the Android module:
+ * <pre>
+ * StompLog.setLogger(new AndroidLogger());
+ * </pre>
+ */
+public final class StompLog {
+
+    private static final StompLogger NO_OP = new StompLogger() {
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        @Override
+        public void debug(String tag, String message) {
+        }
+
+        @Override
+        public void error(String tag, String message, @Nullable Throwable throwable) {
+        }
+    };
+
+    private static StompLogger logger = NO_OP;
+    @Nullable
+    private static FrameTracer frameTracer;
+
+    private StompLog() {
+    }
+
+    /**
+     * @param logger null to disable logging
+     */
+    public static void setLogger(@Nullable StompLogger logger) {
+        StompLog.logger = logger != null ? logger : NO_OP;
+    }
+
+    /**
+     * @param frameTracer null to disable tracing
+     */
+    public static void setFrameTracer(@Nullable FrameTracer frameTracer) {
+        StompLog.frameTracer = frameTracer;
+    }
+
+    public static boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    public static void d(String tag, String message) {
+        if (logger.isDebugEnabled()) logger.debug(tag, message);
+    }
+
+    public static void e(String tag, String message, @Nullable Throwable throwable) {
+        logger.error(tag, message, throwable);
+    }
+
+    public static boolean isTracing() {
+        return frameTracer != null;
+    }
+
+    public static void traceReceived(StompMessage frame) {
+        FrameTracer tracer = frameTracer;
+        if (tracer != null) tracer.onFrameReceived(frame);
+    }
+
+    public static void traceSent(StompMessage frame) {
+        FrameTracer tracer = frameTracer;
+        if (tracer != null) tracer.onFrameSent(frame);
+    }
+}
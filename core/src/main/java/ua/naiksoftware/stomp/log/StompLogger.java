@@ -0,0 +1,18 @@
+package ua.naiksoftware.stomp.log;
+
+import javax.annotation.Nullable;
+
+/**
+ * Logging SPI of the library, see {@link StompLog#setLogger(StompLogger)}.
+ */
+public interface StompLogger {
+
+    /**
+     * Checked before any debug message is built, so that disabled logging costs no allocation.
+     */
+    boolean isDebugEnabled();
+
+    void debug(String tag, String message);
+
+    void error(String tag, String message, @Nullable Throwable throwable);
+}
@@ -0,0 +1,25 @@
+package ua.naiksoftware.stomp.pathmatcher;
+
+import java.util.Collection;
+
+/**
+ * {@link PathMatcher} which keeps an index of the subscribed paths, so that all paths matching
+ * a destination can be found in one lookup instead of testing every subscription.
+ */
+public interface IndexedPathMatcher extends PathMatcher {
+
+    /**
+     * Called when a subscription to the path is made. Paths are reference counted.
+     */
+    void addPath(String path);
+
+    /**
+     * Called when a subscription to the path is gone.
+     */
+    void removePath(String path);
+
+    /**
+     * @return all added paths matching the destination, never null
+     */
+    Collection<String> matchingPaths(String destination);
+}
@@ -0,0 +1,119 @@
+package ua.naiksoftware.stomp.pathmatcher;
+
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompMessage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RabbitPathMatcher implements IndexedPathMatcher {
+
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final int cacheSize;
+
+    /**
+     * Compiled single-path tries, for {@link #matches(String, StompMessage)}. Cleared when it gets
+     * {@code cacheSize} paths, so paths that are never subscribed don't pile up.
+     */
+    private final ConcurrentHashMap<String, WildcardTrie> compiledPaths = new ConcurrentHashMap<>();
+
+    // guarded by this, changed only by addPath and removePath
+    private final Map<String, Integer> indexedPaths = new HashMap<>();
+    // replaced on every change of the paths, so lookups need no lock
+    private volatile Index index = new Index(new WildcardTrie());
+
+    public RabbitPathMatcher() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize how many destinations to remember the {@link #matchingPaths(String)} result for,
+     *                  and how many paths to keep compiled for {@link #matches(String, StompMessage)}
+     */
+    public RabbitPathMatcher(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * RMQ-style wildcards.
+     * See more info <a href="https://www.rabbitmq.com/tutorials/tutorial-five-java.html">here</a>.
+     * <p>
+     * The path is compiled once and reused for the following calls.
+     */
+    @Override
+    public boolean matches(String path, StompMessage msg) {
+        String dest = msg.findHeader(StompHeader.DESTINATION);
+        if (dest == null) return false;
+
+        WildcardTrie compiled = compiledPaths.get(path);
+        if (compiled == null) {
+            compiled = new WildcardTrie();
+            compiled.add(path);
+            if (compiledPaths.size() >= cacheSize) compiledPaths.clear();
+            compiledPaths.put(path, compiled);
+        }
+        return compiled.matches(dest);
+    }
+
+    @Override
+    public synchronized void addPath(String path) {
+        Integer count = indexedPaths.get(path);
+        indexedPaths.put(path, count == null ? 1 : count + 1);
+        if (count == null) rebuildIndex();
+    }
+
+    @Override
+    public synchronized void removePath(String path) {
+        Integer count = indexedPaths.get(path);
+        if (count == null) return;
+        if (count > 1) {
+            indexedPaths.put(path, count - 1);
+        } else {
+            indexedPaths.remove(path);
+            compiledPaths.remove(path);
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Subscriptions change rarely, so a new trie is built instead of changing the one lookups walk.
+     */
+    private void rebuildIndex() {
+        WildcardTrie trie = new WildcardTrie();
+        for (String path : indexedPaths.keySet()) trie.add(path);
+        index = new Index(trie);
+    }
+
+    @Override
+    public Collection<String> matchingPaths(String destination) {
+        Index index = this.index;
+        Collection<String> matched = index.cache.get(destination);
+        if (matched == null) {
+            Set<String> result = new LinkedHashSet<>();
+            index.trie.match(destination, result);
+            matched = result.isEmpty() ? Collections.<String>emptySet() : Collections.unmodifiableSet(result);
+            if (index.cache.size() >= cacheSize) index.cache.clear();
+            index.cache.put(destination, matched);
+        }
+        return matched;
+    }
+
+    /**
+     * Trie of the added paths, never modified once published, and the results found in it.
+     */
+    private static final class Index {
+
+        final WildcardTrie trie;
+        final ConcurrentHashMap<String, Collection<String>> cache = new ConcurrentHashMap<>();
+
+        Index(WildcardTrie trie) {
+            this.trie = trie;
+        }
+    }
+}
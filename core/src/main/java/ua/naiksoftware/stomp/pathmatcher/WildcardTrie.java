@@ -0,0 +1,210 @@
+package ua.naiksoftware.stomp.pathmatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Segment trie of RMQ-style paths, where segments are separated by '.'.
+ * <ul>
+ * <li>{@code *} matches exactly one word</li>
+ * <li>{@code #} matches zero or more words</li>
+ * <li>{@code *} inside a segment, e.g. {@code prefix*}, matches any chars of that one word</li>
+ * </ul>
+ * Not thread safe, but may be matched from several threads once it is no longer changed.
+ */
+final class WildcardTrie {
+
+    private static final char SEPARATOR = '.';
+
+    private final Node root = new Node();
+
+    void add(String path) {
+        Node node = root;
+        for (String segment : split(path)) {
+            node = node.child(segment);
+        }
+        node.paths.add(path);
+    }
+
+    void remove(String path) {
+        remove(root, split(path), 0, path);
+    }
+
+    /**
+     * Collects paths matching the destination with a single walk of the trie.
+     */
+    void match(String destination, Set<String> result) {
+        List<String> words = split(destination);
+        match(root, words, 0, result);
+    }
+
+    /**
+     * @return true if any path matches the destination
+     */
+    boolean matches(String destination) {
+        return matches(root, split(destination), 0);
+    }
+
+    /**
+     * @return true if the node became empty and can be pruned
+     */
+    private static boolean remove(Node node, List<String> segments, int index, String path) {
+        if (index == segments.size()) {
+            node.paths.remove(path);
+        } else {
+            String segment = segments.get(index);
+            Node child = node.find(segment);
+            if (child != null && remove(child, segments, index + 1, path)) {
+                node.removeChild(segment);
+            }
+        }
+        return node.isEmpty();
+    }
+
+    private static void match(Node node, List<String> words, int index, Set<String> result) {
+        if (index == words.size()) {
+            result.addAll(node.paths);
+        } else {
+            String word = words.get(index);
+            if (node.literals != null) {
+                Node literal = node.literals.get(word);
+                if (literal != null) match(literal, words, index + 1, result);
+            }
+            if (node.star != null) match(node.star, words, index + 1, result);
+            if (node.globs != null) {
+                for (Map.Entry<String, Node> glob : node.globs.entrySet()) {
+                    if (globMatches(glob.getKey(), word)) match(glob.getValue(), words, index + 1, result);
+                }
+            }
+        }
+        if (node.hash != null) {
+            // '#' consumes any number of the remaining words, including zero
+            for (int i = index; i <= words.size(); i++) {
+                match(node.hash, words, i, result);
+            }
+        }
+    }
+
+    private static boolean matches(Node node, List<String> words, int index) {
+        if (index == words.size()) {
+            if (!node.paths.isEmpty()) return true;
+        } else {
+            String word = words.get(index);
+            if (node.literals != null) {
+                Node literal = node.literals.get(word);
+                if (literal != null && matches(literal, words, index + 1)) return true;
+            }
+            if (node.star != null && matches(node.star, words, index + 1)) return true;
+            if (node.globs != null) {
+                for (Map.Entry<String, Node> glob : node.globs.entrySet()) {
+                    if (globMatches(glob.getKey(), word) && matches(glob.getValue(), words, index + 1)) return true;
+                }
+            }
+        }
+        if (node.hash != null) {
+            for (int i = index; i <= words.size(); i++) {
+                if (matches(node.hash, words, i)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches a single word against a segment where '*' stands for any chars.
+     */
+    static boolean globMatches(String glob, String word) {
+        int g = 0, w = 0, starG = -1, starW = 0;
+        while (w < word.length()) {
+            if (g < glob.length() && glob.charAt(g) == '*') {
+                starG = g++;
+                starW = w;
+            } else if (g < glob.length() && glob.charAt(g) == word.charAt(w)) {
+                g++;
+                w++;
+            } else if (starG >= 0) {
+                g = starG + 1;
+                w = ++starW;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') g++;
+        return g == glob.length();
+    }
+
+    static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = path.indexOf(SEPARATOR, start)) >= 0) {
+            segments.add(path.substring(start, end));
+            start = end + 1;
+        }
+        segments.add(start == 0 ? path : path.substring(start));
+        return segments;
+    }
+
+    private static final class Node {
+
+        private final Set<String> paths = new LinkedHashSet<>(1);
+        private Map<String, Node> literals;
+        private Map<String, Node> globs;
+        private Node star;
+        private Node hash;
+
+        Node child(String segment) {
+            if ("*".equals(segment)) {
+                if (star == null) star = new Node();
+                return star;
+            }
+            if ("#".equals(segment)) {
+                if (hash == null) hash = new Node();
+                return hash;
+            }
+            if (segment.indexOf('*') >= 0) {
+                if (globs == null) globs = new HashMap<>();
+                return getOrCreate(globs, segment);
+            }
+            if (literals == null) literals = new HashMap<>();
+            return getOrCreate(literals, segment);
+        }
+
+        Node find(String segment) {
+            if ("*".equals(segment)) return star;
+            if ("#".equals(segment)) return hash;
+            Map<String, Node> children = segment.indexOf('*') >= 0 ? globs : literals;
+            return children != null ? children.get(segment) : null;
+        }
+
+        void removeChild(String segment) {
+            if ("*".equals(segment)) {
+                star = null;
+            } else if ("#".equals(segment)) {
+                hash = null;
+            } else if (segment.indexOf('*') >= 0) {
+                globs.remove(segment);
+            } else {
+                literals.remove(segment);
+            }
+        }
+
+        boolean isEmpty() {
+            return paths.isEmpty() && star == null && hash == null
+                    && (literals == null || literals.isEmpty())
+                    && (globs == null || globs.isEmpty());
+        }
+
+        private static Node getOrCreate(Map<String, Node> children, String segment) {
+            Node node = children.get(segment);
+            if (node == null) {
+                node = new Node();
+                children.put(segment, node);
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package ua.naiksoftware.stomp.provider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import ua.naiksoftware.stomp.dto.LifecycleEvent;
+import ua.naiksoftware.stomp.dto.StompHeader;
+import ua.naiksoftware.stomp.dto.StompCommand;
+import ua.naiksoftware.stomp.dto.StompMessage;
+import ua.naiksoftware.stomp.log.StompLog;
+
+/**
+ * Created by forresthopkinsa on 8/8/2017.
+ * <p>
+ * Created because there was a lot of shared code between JWS and OkHttp connection providers.
+ */
+
+public abstract class AbstractConnectionProvider implements BinaryConnectionProvider {
+
+    private static final String TAG = AbstractConnectionProvider.class.getSimpleName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Nonnull
+    private final PublishSubject<LifecycleEvent> lifecycleStream;
+    @Nonnull
+    private final PublishSubject<String> messagesStream;
+    @Nonnull
+    private final PublishSubject<ByteBuffer> binaryMessagesStream;
+    @Nullable
+    private volatile WriteCoalescer writeCoalescer;
+
+    public AbstractConnectionProvider() {
+        lifecycleStream = PublishSubject.create();
+        messagesStream = PublishSubject.create();
+        binaryMessagesStream = PublishSubject.create();
+    }
+
+    @Nonnull
+    @Override
+    public Observable<String> messages() {
+        // listen before the socket opens, a fast server may answer right away
+        return messagesStream.mergeWith(initSocket());
+    }
+
+    @Nonnull
+    @Override
+    public Observable<ByteBuffer> binaryMessages() {
+        return binaryMessagesStream;
+    }
+
+    /**
+     * Simply close socket.
+     * <p>
+     * For example:
+     * <pre>
+     * webSocket.close();
+     * </pre>
+     */
+    protected abstract void rawDisconnect();
+
+    @Override
+    public Completable disconnect() {
+        return Completable
+                .fromAction(this::rawDisconnect);
+    }
+
+    private Completable initSocket() {
+        return Completable
+                .fromAction(this::createWebSocketConnection);
+    }
+
+    /**
+     * Most important method: connects to websocket and notifies program of messages.
+     * <p>
+     * See implementations in OkHttpConnectionProvider and WebSocketsConnectionProvider.
+     */
+    protected abstract void createWebSocketConnection();
+
+    /**
+     * Opt-in write coalescing: text frames sent within {@code windowMs} are written as one
+     * WebSocket message, which saves WebSocket framing and syscalls on bursts of small sends.
+     * The returned Completable of {@link #send(String)} completes when the batch is written.
+     * Binary messages are not coalesced, the pending batch is written before them.
+     *
+     * @param windowMs     how long to gather frames after the first one of a batch
+     * @param maxBatchSize write the batch as soon as it gets this long, in chars
+     */
+    public void setWriteCoalescing(long windowMs, int maxBatchSize) {
+        writeCoalescer = new WriteCoalescer(this::sendBatch, Schedulers.io(), windowMs, maxBatchSize);
+    }
+
+    /**
+     * Back to one WebSocket message per frame, pending frames are written first.
+     */
+    public void disableWriteCoalescing() {
+        WriteCoalescer coalescer = writeCoalescer;
+        writeCoalescer = null;
+        if (coalescer != null) coalescer.flush();
+    }
+
+    private void sendBatch(String frames) {
+        if (getSocket() == null) {
+            throw new IllegalStateException("Not connected");
+        }
+        if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Send STOMP batch: " + frames);
+        rawSend(frames);
+    }
+
+    @Nonnull
+    @Override
+    public Completable send(String stompMessage) {
+        WriteCoalescer coalescer = writeCoalescer;
+        if (coalescer != null) {
+            return Completable.defer(() -> {
+                if (getSocket() == null) {
+                    throw new IllegalStateException("Not connected");
+                }
+                return coalescer.enqueue(stompMessage);
+            });
+        }
+        return Completable.fromCallable(() -> {
+            if (getSocket() == null) {
+                throw new IllegalStateException("Not connected");
+            } else {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Send STOMP message: " + stompMessage);
+                rawSend(stompMessage);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Binary messages are not coalesced, text frames sent before one must be written first.
+     */
+    private void flushCoalescedFrames() {
+        WriteCoalescer coalescer = writeCoalescer;
+        if (coalescer != null) coalescer.flush();
+    }
+
+    /**
+     * Just a simple message send.
+     * <p>
+     * For example:
+     * <pre>
+     * webSocket.send(stompMessage);
+     * </pre>
+     *
+     * @param stompMessage message to send
+     */
+    protected abstract void rawSend(String stompMessage);
+
+    @Nonnull
+    @Override
+    public Completable send(ByteBuffer stompMessage) {
+        return Completable.fromCallable(() -> {
+            if (getSocket() == null) {
+                throw new IllegalStateException("Not connected");
+            } else {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Send binary STOMP message: " + stompMessage.remaining() + " bytes");
+                flushCoalescedFrames();
+                rawSend(stompMessage);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Sends one binary message of {@code length} bytes read from the channel, in chunks where
+     * the transport allows it, see {@link #rawSend(ReadableByteChannel, long)}. The channel is read
+     * on the subscribing thread.
+     */
+    @Nonnull
+    public Completable send(@Nonnull ReadableByteChannel message, long length) {
+        return Completable.fromCallable(() -> {
+            if (getSocket() == null) {
+                throw new IllegalStateException("Not connected");
+            } else {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Send streamed STOMP message: " + length + " bytes");
+                flushCoalescedFrames();
+                rawSend(message, length);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Send a binary message read from the channel. This default reads it whole and sends it with
+     * {@link #rawSend(ByteBuffer)}, providers whose transport has fragmented messages override it.
+     *
+     * @param length exact length of the message
+     */
+    protected void rawSend(@Nonnull ReadableByteChannel message, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) throw new IOException("Message of " + length + " bytes is too large");
+        ByteBuffer bytes = ByteBuffer.allocate((int) length);
+        while (bytes.hasRemaining()) {
+            if (message.read(bytes) < 0) {
+                throw new EOFException("Message ended after " + bytes.position() + " of " + length + " bytes");
+            }
+        }
+        bytes.flip();
+        rawSend(bytes);
+    }
+
+    /**
+     * Send a binary message. Providers whose transport has no binary messages
+     * may keep this default, which sends the frame decoded as UTF-8 text.
+     *
+     * @param stompMessage message to send
+     */
+    protected void rawSend(ByteBuffer stompMessage) {
+        rawSend(UTF_8.decode(stompMessage).toString());
+    }
+
+    /**
+     * Get socket object.
+     * Used for null checking; this object is expected to be null when the connection is not yet established.
+     * <p>
+     * For example:
+     * <pre>
+     * return webSocket;
+     * </pre>
+     */
+    @Nullable
+    protected abstract Object getSocket();
+
+    protected void emitLifecycleEvent(@Nonnull LifecycleEvent lifecycleEvent) {
+        if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Emit lifecycle event: " + lifecycleEvent.getType().name());
+        lifecycleStream.onNext(lifecycleEvent);
+    }
+
+    protected void emitMessage(String stompMessage) {
+        if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Receive STOMP message: " + stompMessage);
+        messagesStream.onNext(stompMessage);
+    }
+
+    /**
+     * Emits the binary message as is. If nobody listens to {@link #binaryMessages()}
+     * it is decoded as UTF-8 and emitted to {@link #messages()}.
+     */
+    protected void emitMessage(ByteBuffer stompMessage) {
+        if (binaryMessagesStream.hasObservers()) {
+            if (StompLog.isDebugEnabled()) StompLog.d(TAG, "Receive binary STOMP message: " + stompMessage.remaining() + " bytes");
+            binaryMessagesStream.onNext(stompMessage);
+        } else {
+            emitMessage(UTF_8.decode(stompMessage).toString());
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Observable<LifecycleEvent> lifecycle() {
+        return lifecycleStream;
+    }
+}
@@ -0,0 +1,27 @@
+package ua.naiksoftware.stomp.provider;
+
+import java.nio.ByteBuffer;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+
+/**
+ * {@link ConnectionProvider} which also carries binary WebSocket messages,
+ * so binary payloads (protobuf, CBOR...) are never decoded into a String.
+ */
+public interface BinaryConnectionProvider extends ConnectionProvider {
+
+    /**
+     * Subscribe this for receive binary stomp messages. The buffers are not copied
+     * from the transport and must not be modified.
+     * <p>
+     * Unlike {@link #messages()} does not open the socket.
+     */
+    Observable<ByteBuffer> binaryMessages();
+
+    /**
+     * Sending stomp messages as binary WebSocket messages.
+     * onError if not connected or error detected will be called, or onCompleted id sending started
+     */
+    Completable send(ByteBuffer stompMessage);
+}
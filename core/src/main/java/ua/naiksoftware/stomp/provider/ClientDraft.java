@@ -0,0 +1,87 @@
+package ua.naiksoftware.stomp.provider;
+
+import javax.annotation.Nullable;
+
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.handshake.ClientHandshakeBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link Draft_6455} with what {@link WebSocketsConnectionProvider} adds to Java-WebSocket 1.3:
+ * <ul>
+ * <li>the RSV1 bit of frames compressed by {@link PerMessageDeflateExtension} is put on the wire,
+ * Java-WebSocket reads the bit but never writes it;</li>
+ * <li>large and fragmented text messages are handed over as their UTF-8 bytes, like binary ones,
+ * instead of being decoded into a String.</li>
+ * </ul>
+ */
+class ClientDraft extends Draft_6455 {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    private final int streamingThreshold;
+
+    /**
+     * @param streamingThreshold text messages of this many bytes or more are handed over as bytes, -1 for none
+     */
+    ClientDraft(@Nullable IExtension extension, int streamingThreshold) {
+        this(extension != null ? Collections.singletonList(extension) : Collections.<IExtension>emptyList(),
+                streamingThreshold);
+    }
+
+    private ClientDraft(List<IExtension> extensions, int streamingThreshold) {
+        super(extensions);
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    @Override
+    public ClientHandshakeBuilder postProcessHandshakeRequestAsClient(ClientHandshakeBuilder request) {
+        super.postProcessHandshakeRequestAsClient(request);
+        // the offers are joined with a trailing "; ", which reads as an empty parameter
+        String offer = request.getFieldValue(EXTENSIONS_HEADER).trim();
+        if (offer.endsWith(";")) {
+            request.put(EXTENSIONS_HEADER, offer.substring(0, offer.length() - 1));
+        }
+        return request;
+    }
+
+    @Override
+    public ByteBuffer createBinaryFrame(Framedata framedata) {
+        // the extension encodes the frame and sets RSV1 in super
+        ByteBuffer frame = super.createBinaryFrame(framedata);
+        if (framedata.isRSV1()) frame.put(0, (byte) (frame.get(0) | 0x40));
+        return frame;
+    }
+
+    @Override
+    public void processFrame(WebSocketImpl webSocket, Framedata frame) throws InvalidDataException {
+        if (streamingThreshold >= 0 && frame.getOpcode() == Framedata.Opcode.TEXT
+                && (!frame.isFin() || frame.getPayloadData().remaining() >= streamingThreshold)) {
+            // already validated as UTF-8, fragments are then joined as binary ones
+            BinaryFrame bytes = new BinaryFrame();
+            bytes.setFin(frame.isFin());
+            bytes.setPayload(frame.getPayloadData());
+            frame = bytes;
+        }
+        super.processFrame(webSocket, frame);
+    }
+
+    @Override
+    public Draft copyInstance() {
+        List<IExtension> extensions = new ArrayList<>();
+        for (IExtension extension : getKnownExtensions()) {
+            extensions.add(extension.copyInstance());
+        }
+        return new ClientDraft(extensions, streamingThreshold);
+    }
+}
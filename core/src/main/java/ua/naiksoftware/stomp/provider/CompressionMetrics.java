@@ -0,0 +1,72 @@
+package ua.naiksoftware.stomp.provider;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Payload bytes of WebSocket data messages before and after permessage-deflate, for both directions.
+ * Messages which were not compressed count the same on both sides.
+ */
+public final class CompressionMetrics {
+
+    private final AtomicLong bytesBeforeCompression = new AtomicLong();
+    private final AtomicLong bytesAfterCompression = new AtomicLong();
+    private final AtomicLong bytesBeforeDecompression = new AtomicLong();
+    private final AtomicLong bytesAfterDecompression = new AtomicLong();
+    private final AtomicLong compressedMessagesSent = new AtomicLong();
+
+    CompressionMetrics() {
+    }
+
+    /**
+     * @return sent payload bytes as given to the socket
+     */
+    public long getBytesBeforeCompression() {
+        return bytesBeforeCompression.get();
+    }
+
+    /**
+     * @return sent payload bytes as written to the wire
+     */
+    public long getBytesAfterCompression() {
+        return bytesAfterCompression.get();
+    }
+
+    /**
+     * @return received payload bytes as read from the wire
+     */
+    public long getBytesBeforeDecompression() {
+        return bytesBeforeDecompression.get();
+    }
+
+    /**
+     * @return received payload bytes after inflating
+     */
+    public long getBytesAfterDecompression() {
+        return bytesAfterDecompression.get();
+    }
+
+    /**
+     * @return count of sent messages which were compressed, smaller ones and those which didn't shrink are not
+     */
+    public long getCompressedMessagesSent() {
+        return compressedMessagesSent.get();
+    }
+
+    void onSent(int before, int after, boolean compressed) {
+        bytesBeforeCompression.addAndGet(before);
+        bytesAfterCompression.addAndGet(after);
+        if (compressed) compressedMessagesSent.incrementAndGet();
+    }
+
+    void onReceived(int before, int after) {
+        bytesBeforeDecompression.addAndGet(before);
+        bytesAfterDecompression.addAndGet(after);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionMetrics{sent=" + getBytesBeforeCompression() + "->" + getBytesAfterCompression()
+                + ", received=" + getBytesBeforeDecompression() + "->" + getBytesAfterDecompression()
+                + ", compressedMessagesSent=" + getCompressedMessagesSent() + '}';
+    }
+}
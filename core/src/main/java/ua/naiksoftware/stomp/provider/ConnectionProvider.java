@@ -17,7 +17,6 @@ public interface ConnectionProvider {
     /**
      * Sending stomp messages via you ConnectionProvider.
      * onError if not connected or error detected will be called, or onCompleted id sending started
-     * TODO: send messages with ACK
      */
     Completable send(String stompMessage);
 
@@ -1,9 +1,12 @@
 package ua.naiksoftware.stomp.provider;
 
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-import android.util.Log;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
@@ -14,15 +17,21 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
+import okio.Buffer;
 import okio.ByteString;
 import ua.naiksoftware.stomp.dto.LifecycleEvent;
 
+/**
+ * OkHttp 3 has no WebSocket extensions, so this provider can't compress messages,
+ * see {@link WebSocketsConnectionProvider#setCompression(int, int)}. Nor can it send a message
+ * in fragments, and it refuses messages once 16 MiB are waiting to be written.
+ */
 public class OkHttpConnectionProvider extends AbstractConnectionProvider {
 
     public static final String TAG = "OkHttpConnProvider";
 
     private final String mUri;
-    @NonNull
+    @Nonnull
     private final Map<String, String> mConnectHttpHeaders;
     private final OkHttpClient mOkHttpClient;
 
@@ -53,7 +62,7 @@ public class OkHttpConnectionProvider extends AbstractConnectionProvider {
         openSocket = mOkHttpClient.newWebSocket(requestBuilder.build(),
                 new WebSocketListener() {
                     @Override
-                    public void onOpen(WebSocket webSocket, @NonNull Response response) {
+                    public void onOpen(WebSocket webSocket, @Nonnull Response response) {
                         LifecycleEvent openEvent = new LifecycleEvent(LifecycleEvent.Type.OPENED);
 
                         TreeMap<String, String> headersAsMap = headersAsMap(response);
@@ -68,8 +77,8 @@ public class OkHttpConnectionProvider extends AbstractConnectionProvider {
                     }
 
                     @Override
-                    public void onMessage(WebSocket webSocket, @NonNull ByteString bytes) {
-                        emitMessage(bytes.utf8());
+                    public void onMessage(WebSocket webSocket, @Nonnull ByteString bytes) {
+                        emitMessage(bytes.asByteBuffer());
                     }
 
                     @Override
@@ -100,14 +109,32 @@ public class OkHttpConnectionProvider extends AbstractConnectionProvider {
         openSocket.send(stompMessage);
     }
 
+    @Override
+    protected void rawSend(ByteBuffer stompMessage) {
+        openSocket.send(ByteString.of(stompMessage));
+    }
+
+    /**
+     * OkHttp sends whole messages only. The message is read into okio segments,
+     * which are then written without copying them into one array.
+     */
+    @Override
+    protected void rawSend(@Nonnull ReadableByteChannel message, long length) throws IOException {
+        Buffer buffer = new Buffer();
+        buffer.readFrom(Channels.newInputStream(message), length);
+        if (!openSocket.send(buffer.snapshot())) {
+            throw new IOException("Message of " + length + " bytes not sent, the socket is closing or its queue is full");
+        }
+    }
+
     @Nullable
     @Override
     protected Object getSocket() {
         return openSocket;
     }
 
-    @NonNull
-    private TreeMap<String, String> headersAsMap(@NonNull Response response) {
+    @Nonnull
+    private TreeMap<String, String> headersAsMap(@Nonnull Response response) {
         TreeMap<String, String> headersAsMap = new TreeMap<>();
         Headers headers = response.headers();
         for (String key : headers.names()) {
@@ -116,7 +143,7 @@ public class OkHttpConnectionProvider extends AbstractConnectionProvider {
         return headersAsMap;
     }
 
-    private void addConnectionHeadersToBuilder(@NonNull Request.Builder requestBuilder, @NonNull Map<String, String> mConnectHttpHeaders) {
+    private void addConnectionHeadersToBuilder(@Nonnull Request.Builder requestBuilder, @Nonnull Map<String, String> mConnectHttpHeaders) {
         for (Map.Entry<String, String> headerEntry : mConnectHttpHeaders.entrySet()) {
             requestBuilder.addHeader(headerEntry.getKey(), headerEntry.getValue());
         }
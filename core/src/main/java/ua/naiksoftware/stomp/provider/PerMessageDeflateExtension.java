@@ -0,0 +1,235 @@
+package ua.naiksoftware.stomp.provider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.exceptions.InvalidFrameException;
+import org.java_websocket.extensions.CompressionExtension;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.FramedataImpl1;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Client side of permessage-deflate (RFC 7692) for Java-WebSocket, which only has the extension hooks.
+ * <p>
+ * Offers {@code client_no_context_takeover}: every sent message is compressed on its own, because
+ * concurrent sends may reach the socket in another order than they were compressed. Received messages
+ * are inflated with the context kept, unless the server agreed to {@code server_no_context_takeover}.
+ * <p>
+ * Sent fragments are not compressed. A received fragmented message is inflated as a whole into its
+ * last frame, so its text is never validated cut in the middle of a character.
+ * <p>
+ * Uses {@link Deflater#SYNC_FLUSH}, available since Android 4.4.
+ */
+class PerMessageDeflateExtension extends CompressionExtension {
+
+    static final String NAME = "permessage-deflate";
+
+    private static final byte[] TAIL = {0, 0, (byte) 0xff, (byte) 0xff};
+
+    private final int level;
+    private final int minSize;
+    private final CompressionMetrics metrics;
+
+    // guarded by itself, sends may come from any thread
+    private final Deflater deflater;
+    private byte[] deflated = new byte[1024];
+
+    // guarded by this, frames are decoded on the socket reader thread
+    private final Inflater inflater = new Inflater(true);
+    private boolean serverNoContextTakeover;
+    private boolean inflating;
+    @Nullable
+    private byte[] inflated;
+    private int inflatedLength;
+
+    /**
+     * @param level   {@link Deflater} compression level
+     * @param minSize messages with smaller payloads are sent uncompressed, in bytes
+     */
+    PerMessageDeflateExtension(int level, int minSize, @Nonnull CompressionMetrics metrics) {
+        this.level = level;
+        this.minSize = minSize;
+        this.metrics = metrics;
+        deflater = new Deflater(level, true);
+    }
+
+    @Nonnull
+    CompressionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String getProvidedExtensionAsClient() {
+        return NAME + "; client_no_context_takeover";
+    }
+
+    @Override
+    public synchronized boolean acceptProvidedExtensionAsClient(@Nullable String extensions) {
+        if (extensions == null) return false;
+        for (String extension : extensions.split(",")) {
+            String[] params = extension.split(";");
+            if (!NAME.equals(params[0].trim())) continue;
+
+            boolean noContextTakeover = false;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                int eq = param.indexOf('=');
+                String key = eq < 0 ? param : param.substring(0, eq).trim();
+                if ("server_no_context_takeover".equals(key)) {
+                    noContextTakeover = true;
+                } else if (!key.isEmpty() && !"client_no_context_takeover".equals(key)
+                        && !"server_max_window_bits".equals(key)) {
+                    // client_max_window_bits can't be applied to Deflater and was not offered
+                    return false;
+                }
+            }
+            serverNoContextTakeover = noContextTakeover;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void isFrameValid(Framedata frame) throws InvalidDataException {
+        super.isFrameValid(frame);
+        if (frame.getOpcode() == Framedata.Opcode.CONTINUOUS && frame.isRSV1()) {
+            throw new InvalidFrameException("RSV1 set on a continuation frame");
+        }
+    }
+
+    @Override
+    public void encodeFrame(Framedata frame) {
+        if (!(frame instanceof DataFrame)) return;
+
+        ByteBuffer payload = frame.getPayloadData();
+        int size = payload.remaining();
+        if (size < minSize || !frame.isFin() || frame.getOpcode() == Framedata.Opcode.CONTINUOUS) {
+            metrics.onSent(size, size, false);
+            return;
+        }
+
+        byte[] compressed;
+        synchronized (deflater) {
+            int length = deflate(payload);
+            if (length >= size) {
+                metrics.onSent(size, size, false);
+                return;
+            }
+            compressed = Arrays.copyOf(deflated, length);
+        }
+        FramedataImpl1 compressedFrame = (FramedataImpl1) frame;
+        compressedFrame.setPayload(ByteBuffer.wrap(compressed));
+        compressedFrame.setRSV1(true);
+        metrics.onSent(size, compressed.length, true);
+    }
+
+    /**
+     * @return length of the compressed payload in {@link #deflated}, without the trailing empty block
+     */
+    private int deflate(ByteBuffer payload) {
+        if (payload.hasArray()) {
+            deflater.setInput(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            deflater.setInput(bytes);
+        }
+
+        int length = 0;
+        while (true) {
+            length += deflater.deflate(deflated, length, deflated.length - length, Deflater.SYNC_FLUSH);
+            if (length < deflated.length) break;
+            deflated = Arrays.copyOf(deflated, deflated.length * 2);
+        }
+        deflater.reset();
+
+        if (length >= TAIL.length && deflated[length - 1] == TAIL[3] && deflated[length - 2] == TAIL[2]
+                && deflated[length - 3] == TAIL[1] && deflated[length - 4] == TAIL[0]) {
+            length -= TAIL.length;
+        }
+        return length;
+    }
+
+    @Override
+    public synchronized void decodeFrame(Framedata frame) throws InvalidDataException {
+        if (!(frame instanceof DataFrame)) return;
+
+        if (frame.getOpcode() != Framedata.Opcode.CONTINUOUS) inflating = frame.isRSV1();
+        ByteBuffer payload = frame.getPayloadData();
+        int size = payload.remaining();
+        if (!inflating) {
+            metrics.onReceived(size, size);
+            return;
+        }
+
+        try {
+            inflate(payload);
+            if (frame.isFin()) inflate(ByteBuffer.wrap(TAIL));
+        } catch (DataFormatException e) {
+            throw new InvalidDataException(CloseFrame.PROTOCOL_ERROR, e);
+        }
+
+        FramedataImpl1 inflatedFrame = (FramedataImpl1) frame;
+        inflatedFrame.setRSV1(false);
+        if (!frame.isFin()) {
+            metrics.onReceived(size, 0);
+            inflatedFrame.setPayload(ByteBuffer.allocate(0));
+            return;
+        }
+        metrics.onReceived(size, inflatedLength);
+        inflatedFrame.setPayload(ByteBuffer.wrap(inflated, 0, inflatedLength));
+        inflated = null;
+        inflatedLength = 0;
+        inflating = false;
+        if (serverNoContextTakeover || inflater.finished()) inflater.reset();
+    }
+
+    private void inflate(ByteBuffer payload) throws DataFormatException {
+        if (payload.hasArray()) {
+            inflater.setInput(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            inflater.setInput(bytes);
+        }
+        if (inflated == null) inflated = new byte[Math.max(256, payload.remaining() * 4)];
+
+        while (true) {
+            if (inflatedLength == inflated.length) inflated = Arrays.copyOf(inflated, inflated.length * 2);
+            int count = inflater.inflate(inflated, inflatedLength, inflated.length - inflatedLength);
+            if (count == 0) {
+                if (inflater.needsDictionary()) throw new DataFormatException("Preset dictionary is not supported");
+                return;
+            }
+            inflatedLength += count;
+        }
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new PerMessageDeflateExtension(level, minSize, metrics);
+    }
+
+    @Override
+    public synchronized void reset() {
+        inflater.reset();
+        inflating = false;
+        inflated = null;
+        inflatedLength = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PerMessageDeflateExtension{level=" + level + ", minSize=" + minSize + '}';
+    }
+}
@@ -0,0 +1,260 @@
+package ua.naiksoftware.stomp.provider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.handshake.ServerHandshake;
+import ua.naiksoftware.stomp.dto.LifecycleEvent;
+import ua.naiksoftware.stomp.log.StompLog;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Created by naik on 05.05.16.
+ */
+
+public class WebSocketsConnectionProvider extends AbstractConnectionProvider {
+
+    private static final String TAG = WebSocketsConnectionProvider.class.getSimpleName();
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // chunks waiting for the socket writer before the sender waits too
+    private static final int MAX_QUEUED_CHUNKS = 4;
+
+    private final String mUri;
+    @Nonnull
+    private final Map<String, String> mConnectHttpHeaders;
+
+    private WebSocketClient mWebSocketClient;
+    private boolean haveConnection;
+    private TreeMap<String, String> mServerHandshakeHeaders;
+    @Nullable
+    private volatile PerMessageDeflateExtension compression;
+    private volatile int streamingThreshold = -1;
+    // a fragmented message must not be interleaved with other messages
+    private final Object sendLock = new Object();
+
+    /**
+     * Support UIR scheme ws://host:port/path
+     *
+     * @param connectHttpHeaders may be null
+     */
+    public WebSocketsConnectionProvider(String uri, @Nullable Map<String, String> connectHttpHeaders) {
+        mUri = uri;
+        mConnectHttpHeaders = connectHttpHeaders != null ? connectHttpHeaders : new HashMap<>();
+    }
+
+    /**
+     * Opt-in permessage-deflate, offered in the handshake of the next connections. If the server
+     * doesn't agree, messages are exchanged uncompressed. Needs Android 4.4.
+     *
+     * @param level   {@link java.util.zip.Deflater} level, 1 (fastest) to 9 (smallest) or -1 for the default
+     * @param minSize messages with smaller payloads are sent uncompressed, in bytes
+     */
+    public void setCompression(int level, int minSize) {
+        if (level < -1 || level > 9) throw new IllegalArgumentException("Compression level must be -1..9, was " + level);
+        if (minSize < 0) throw new IllegalArgumentException("minSize must not be negative");
+        compression = new PerMessageDeflateExtension(level, minSize, new CompressionMetrics());
+    }
+
+    /**
+     * @return bytes before and after compression since {@link #setCompression(int, int)}, null if it was not called
+     */
+    @Nullable
+    public CompressionMetrics getCompressionMetrics() {
+        PerMessageDeflateExtension extension = compression;
+        return extension != null ? extension.getMetrics() : null;
+    }
+
+    /**
+     * Text messages of at least {@code bytes} are emitted to {@link #binaryMessages()} as their UTF-8 bytes,
+     * fragmented ones of any size too. So their body is never held as a String, read it with
+     * {@link ua.naiksoftware.stomp.dto.StompMessage#getPayloadReader()}. Applies to the next connections.
+     */
+    public void setStreamingThreshold(int bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("Threshold must not be negative");
+        streamingThreshold = bytes;
+    }
+
+    @Override
+    public void rawDisconnect() {
+        try {
+            mWebSocketClient.closeBlocking();
+        } catch (InterruptedException e) {
+            StompLog.e(TAG, "Thread interrupted while waiting for Websocket closing: ", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    protected void createWebSocketConnection() {
+        if (haveConnection)
+            throw new IllegalStateException("Already have connection to web socket");
+
+        PerMessageDeflateExtension extension = compression;
+        int threshold = streamingThreshold;
+        Draft_6455 draft = extension != null || threshold >= 0
+                ? new ClientDraft(extension != null ? extension.copyInstance() : null, threshold)
+                : new Draft_6455();
+
+        mWebSocketClient = new WebSocketClient(URI.create(mUri), draft, mConnectHttpHeaders, 0) {
+
+            @Override
+            public void onWebsocketHandshakeReceivedAsClient(WebSocket conn, ClientHandshake request, @Nonnull ServerHandshake response) throws InvalidDataException {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "onWebsocketHandshakeReceivedAsClient with response: " + response.getHttpStatus() + " " + response.getHttpStatusMessage());
+                mServerHandshakeHeaders = new TreeMap<>();
+                Iterator<String> keys = response.iterateHttpFields();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    mServerHandshakeHeaders.put(key, response.getFieldValue(key));
+                }
+            }
+
+            @Override
+            public void onOpen(@Nonnull ServerHandshake handshakeData) {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "onOpen with handshakeData: " + handshakeData.getHttpStatus() + " " + handshakeData.getHttpStatusMessage());
+                LifecycleEvent openEvent = new LifecycleEvent(LifecycleEvent.Type.OPENED);
+                openEvent.setHandshakeResponseHeaders(mServerHandshakeHeaders);
+                emitLifecycleEvent(openEvent);
+            }
+
+            @Override
+            public void onMessage(String message) {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "onMessage: " + message);
+                emitMessage(message);
+            }
+
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                emitMessage(bytes);
+            }
+
+            @Override
+            public void onClose(int code, String reason, boolean remote) {
+                if (StompLog.isDebugEnabled()) StompLog.d(TAG, "onClose: code=" + code + " reason=" + reason + " remote=" + remote);
+                haveConnection = false;
+                emitLifecycleEvent(new LifecycleEvent(LifecycleEvent.Type.CLOSED));
+
+                StompLog.d(TAG, "Disconnect after close.");
+                disconnect();
+            }
+
+            @Override
+            public void onError(Exception ex) {
+                StompLog.e(TAG, "onError", ex);
+                emitLifecycleEvent(new LifecycleEvent(LifecycleEvent.Type.ERROR, ex));
+            }
+        };
+
+        if (mUri.startsWith("wss")) {
+            try {
+                SSLContext sc = SSLContext.getInstance("TLS");
+                sc.init(null, null, null);
+                SSLSocketFactory factory = sc.getSocketFactory();
+                mWebSocketClient.setSocket(factory.createSocket());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        mWebSocketClient.connect();
+        haveConnection = true;
+    }
+
+    @Override
+    protected void rawSend(String stompMessage) {
+        synchronized (sendLock) {
+            mWebSocketClient.send(stompMessage);
+        }
+    }
+
+    @Override
+    protected void rawSend(ByteBuffer stompMessage) {
+        synchronized (sendLock) {
+            mWebSocketClient.send(stompMessage);
+        }
+    }
+
+    /**
+     * Sends the message as continuation frames of up to 64 KiB, read while the previous ones are written.
+     * If the message can't be read to its end, the connection is closed, because the unfinished message
+     * can't be continued.
+     * <p>
+     * WebSocket messages can't be interleaved with the frames of a fragmented one, so every other send
+     * of this provider blocks until the last frame is queued. {@link ua.naiksoftware.stomp.StompClient} queues
+     * its frames meanwhile instead, they still go out only after the upload, so upload large bodies over
+     * a separate connection when other traffic must not wait that long.
+     */
+    @Override
+    protected void rawSend(@Nonnull ReadableByteChannel message, long length) throws IOException {
+        WebSocketClient client = mWebSocketClient;
+        ByteBuffer chunk = ByteBuffer.allocate((int) Math.max(1, Math.min(CHUNK_SIZE, length)));
+        synchronized (sendLock) {
+            long remaining = length;
+            boolean started = false;
+            try {
+                do {
+                    chunk.clear();
+                    if (chunk.remaining() > remaining) chunk.limit((int) remaining);
+                    while (chunk.hasRemaining()) {
+                        if (message.read(chunk) < 0) {
+                            throw new EOFException("Message ended after " + (length - remaining + chunk.position())
+                                    + " of " + length + " bytes");
+                        }
+                    }
+                    chunk.flip();
+                    remaining -= chunk.remaining();
+                    client.sendFragmentedFrame(Framedata.Opcode.BINARY, chunk, remaining == 0);
+                    started = true;
+                    awaitWriter(client);
+                } while (remaining > 0);
+            } catch (IOException | RuntimeException e) {
+                if (started && remaining > 0) client.close(CloseFrame.UNEXPECTED_CONDITION, "Message not completed");
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Waits while more than {@link #MAX_QUEUED_CHUNKS} frames wait for the socket writer thread.
+     * Java-WebSocket signals nothing when it takes a frame and its queue is unbounded and final,
+     * so the only bound is to poll its size.
+     */
+    private static void awaitWriter(WebSocketClient client) throws IOException {
+        WebSocketImpl connection = (WebSocketImpl) client.getConnection();
+        while (connection.outQueue.size() > MAX_QUEUED_CHUNKS) {
+            if (!client.isOpen()) throw new IOException("Connection closed");
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    @Override
+    protected Object getSocket() {
+        return mWebSocketClient;
+    }
+}
@@ -0,0 +1,85 @@
+package ua.naiksoftware.stomp.provider;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Scheduler;
+
+/**
+ * Gathers text frames sent within a short window and writes them as one WebSocket message
+ * of concatenated NUL-terminated STOMP frames, which the spec allows.
+ * <p>
+ * A batch is written when the window since its first frame elapses, or as soon as it reaches
+ * the size limit. Frames keep their order.
+ */
+class WriteCoalescer {
+
+    interface Writer {
+        void write(String frames) throws Exception;
+    }
+
+    private final Writer writer;
+    private final Scheduler scheduler;
+    private final long windowMs;
+    private final int maxBatchSize;
+
+    private final StringBuilder pending = new StringBuilder();
+    private List<CompletableEmitter> pendingEmitters = new ArrayList<>();
+
+    /**
+     * @param maxBatchSize batch size limit in chars, which equals bytes for ASCII frames
+     */
+    WriteCoalescer(@Nonnull Writer writer, @Nonnull Scheduler scheduler, long windowMs, int maxBatchSize) {
+        this.writer = writer;
+        this.scheduler = scheduler;
+        this.windowMs = windowMs;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return completes when the batch containing the frame is written
+     */
+    Completable enqueue(@Nonnull String frame) {
+        return Completable.create(emitter -> {
+            boolean flushNow;
+            boolean scheduleFlush;
+            synchronized (this) {
+                pending.append(frame);
+                pendingEmitters.add(emitter);
+                flushNow = pending.length() >= maxBatchSize;
+                scheduleFlush = !flushNow && pendingEmitters.size() == 1;
+            }
+            if (flushNow) {
+                flush();
+            } else if (scheduleFlush) {
+                scheduler.scheduleDirect(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Writes the pending batch, if any. The write happens under the lock, so that batches
+     * flushed concurrently by size and by window can't be reordered.
+     */
+    synchronized void flush() {
+        if (pendingEmitters.isEmpty()) return;
+
+        String frames = pending.toString();
+        List<CompletableEmitter> emitters = pendingEmitters;
+        pending.setLength(0);
+        pendingEmitters = new ArrayList<>();
+
+        try {
+            writer.write(frames);
+        } catch (Throwable throwable) {
+            for (CompletableEmitter emitter : emitters) emitter.tryOnError(throwable);
+            return;
+        }
+        for (CompletableEmitter emitter : emitters) emitter.onComplete();
+    }
+}
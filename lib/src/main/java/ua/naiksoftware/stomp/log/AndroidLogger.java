@@ -0,0 +1,38 @@
+package ua.naiksoftware.stomp.log;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Logs to Logcat.
+ */
+public class AndroidLogger implements StompLogger {
+
+    private final boolean debugEnabled;
+
+    public AndroidLogger() {
+        this(true);
+    }
+
+    /**
+     * @param debugEnabled false to log errors only
+     */
+    public AndroidLogger(boolean debugEnabled) {
+        this.debugEnabled = debugEnabled;
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    @Override
+    public void debug(String tag, String message) {
+        Log.d(tag, message);
+    }
+
+    @Override
+    public void error(String tag, String message, @Nullable Throwable throwable) {
+        Log.e(tag, message, throwable);
+    }
+}
@@ -0,0 +1,137 @@
+package ua.naiksoftware.stomp
+
+import spock.util.concurrent.PollingConditions
+
+class AckTests extends Configuration {
+
+    def provider = new ReconnectTests.LoopbackProvider()
+    def conditions = new PollingConditions(timeout: 5)
+
+    def connect(StompClient client, AckMode ackMode) {
+        client.connect()
+        def messages = client.topic('/queue/a', null, ackMode).test()
+        conditions.eventually { assert client.connected && provider.sent.any { it.startsWith('SUBSCRIBE\n') } }
+        def id = client.getTopicId('/queue/a')
+        [messages, id]
+    }
+
+    def "subscribe must carry the ack mode"() {
+        given:
+        def client = new StompClient(provider)
+
+        when:
+        connect(client, AckMode.CLIENT_INDIVIDUAL)
+
+        then:
+        provider.sent.find { it.startsWith('SUBSCRIBE\n') }.contains('ack:client-individual\n')
+    }
+
+    def "ack must use the ack header of STOMP 1.2 or message-id of STOMP 1.1"() {
+        given:
+        def client = new StompClient(provider)
+        def (messages, id) = connect(client, AckMode.CLIENT)
+
+        when:
+        provider.receive("MESSAGE\ndestination:/queue/a\nsubscription:$id\nmessage-id:m1\nack:a1\n\none\u0000")
+        provider.receive("MESSAGE\ndestination:/queue/a\nsubscription:$id\nmessage-id:m2\n\ntwo\u0000")
+        conditions.eventually { assert messages.values().size() == 2 }
+        client.ack(messages.values()[0]).blockingAwait()
+        client.nack(messages.values()[1]).blockingAwait()
+
+        then:
+        provider.sent.contains('ACK\nid:a1\n\n\u0000')
+        provider.sent.contains("NACK\nmessage-id:m2\nsubscription:$id\n\n\u0000".toString())
+    }
+
+    def "auto topic must not be acknowledged"() {
+        given:
+        def client = new StompClient(provider)
+        def (messages, id) = connect(client, AckMode.AUTO)
+        provider.receive("MESSAGE\ndestination:/queue/a\nsubscription:$id\nack:a1\n\none\u0000")
+        conditions.eventually { assert messages.values().size() == 1 }
+
+        expect:
+        client.ack(messages.values()[0]).test().await().assertError(IllegalArgumentException)
+    }
+
+    def "batched client acks must be cumulative and individual acks coalesced"() {
+        given:
+        def client = new StompClient(provider).withAckBatching(3, 10_000)
+        def (messages, id) = connect(client, ackMode)
+        (1..3).each { provider.receive("MESSAGE\ndestination:/queue/a\nsubscription:$id\nack:a$it\n\n$it\u0000") }
+        conditions.eventually { assert messages.values().size() == 3 }
+        def sentBefore = provider.sent.size()
+
+        when:
+        def acks = messages.values().collect { client.ack(it).test() }
+
+        then:
+        conditions.eventually { acks.each { it.assertComplete() } }
+        provider.sent.size() == sentBefore + 1
+        provider.sent.last() == frames
+
+        where:
+        ackMode                    | frames
+        AckMode.CLIENT             | 'ACK\nid:a3\n\n\u0000'
+        AckMode.CLIENT_INDIVIDUAL  | 'ACK\nid:a1\n\n\u0000ACK\nid:a2\n\n\u0000ACK\nid:a3\n\n\u0000'
+    }
+
+    def "client acks out of order must not move the acknowledged message back"() {
+        given:
+        def client = new StompClient(provider)
+        if (batching) client.withAckBatching(3, 10_000)
+        def (messages, id) = connect(client, AckMode.CLIENT)
+        (1..3).each { provider.receive("MESSAGE\ndestination:/queue/a\nsubscription:$id\nack:a$it\n\n$it\u0000") }
+        conditions.eventually { assert messages.values().size() == 3 }
+
+        when:
+        def acks = [1, 2, 0].collect { client.ack(messages.values()[it]).test() }
+
+        then:
+        conditions.eventually { acks.each { it.assertComplete() } }
+        provider.sent.findAll { it.startsWith('ACK\n') } == sent
+
+        where:
+        batching | sent
+        true     | ['ACK\nid:a3\n\n\u0000']
+        false    | ['ACK\nid:a2\n\n\u0000', 'ACK\nid:a3\n\n\u0000']
+    }
+
+    def "batch must be sent after the delay and before a nack"() {
+        given:
+        def client = new StompClient(provider).withAckBatching(100, delayMs)
+        def (messages, id) = connect(client, AckMode.CLIENT_INDIVIDUAL)
+        (1..2).each { provider.receive("MESSAGE\ndestination:/queue/a\nsubscription:$id\nack:a$it\n\n$it\u0000") }
+        conditions.eventually { assert messages.values().size() == 2 }
+
+        when:
+        def ack = client.ack(messages.values()[0]).test()
+        if (nack) client.nack(messages.values()[1]).blockingAwait()
+
+        then:
+        conditions.eventually { ack.assertComplete() }
+        provider.sent.findIndexOf { it == 'ACK\nid:a1\n\n\u0000' } >= 0
+        !nack || provider.sent.findIndexOf { it == 'ACK\nid:a1\n\n\u0000' } < provider.sent.findIndexOf { it == 'NACK\nid:a2\n\n\u0000' }
+
+        where:
+        delayMs | nack
+        20      | false
+        60_000  | true
+    }
+
+    def "pending acks must fail on disconnect"() {
+        given:
+        def client = new StompClient(provider).withAckBatching(100, 60_000)
+        def (messages, id) = connect(client, AckMode.CLIENT)
+        provider.receive("MESSAGE\ndestination:/queue/a\nsubscription:$id\nack:a1\n\none\u0000")
+        conditions.eventually { assert messages.values().size() == 1 }
+        def ack = client.ack(messages.values()[0]).test()
+
+        when:
+        client.disconnect()
+
+        then:
+        ack.await().assertError(IllegalStateException)
+        !provider.sent.any { it.startsWith('ACK\n') }
+    }
+}
@@ -0,0 +1,92 @@
+package ua.naiksoftware.stomp
+
+import io.reactivex.BackpressureStrategy
+import io.reactivex.exceptions.MissingBackpressureException
+import io.reactivex.subjects.PublishSubject
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.atomic.AtomicLong
+
+class BackpressureTests extends Configuration {
+
+    def "bounded buffer must apply overflow policy"() {
+        given:
+        def source = PublishSubject.<Integer> create()
+        def overflows = new AtomicLong()
+        def subscriber = source.toFlowable(BackpressureStrategy.MISSING)
+                .lift(new BoundedBufferOperator<Integer>(BackpressureConfig.bounded(3, overflow),
+                { it as long } as BoundedBufferOperator.Sizer, overflows))
+                .test(1)
+
+        when:
+        (1..6).each { source.onNext(it) }
+        subscriber.request(10)
+
+        then:
+        subscriber.values() == values
+        overflows.get() == count
+
+        where:
+        overflow                                | values       | count
+        BackpressureConfig.Overflow.DROP_OLDEST | [1, 4, 5, 6] | 2
+        BackpressureConfig.Overflow.DROP_LATEST | [1, 2, 3, 4] | 2
+        BackpressureConfig.Overflow.KEEP_LATEST | [1, 2, 3, 6] | 2
+    }
+
+    def "bounded buffer must signal error on overflow"() {
+        given:
+        def source = PublishSubject.<Integer> create()
+        def subscriber = source.toFlowable(BackpressureStrategy.MISSING)
+                .lift(new BoundedBufferOperator<Integer>(BackpressureConfig.bounded(2, BackpressureConfig.Overflow.ERROR),
+                { 0L } as BoundedBufferOperator.Sizer, null))
+                .test(0)
+
+        when:
+        (1..3).each { source.onNext(it) }
+        subscriber.request(10)
+
+        then:
+        subscriber.assertValues(1, 2)
+        subscriber.assertError(MissingBackpressureException)
+    }
+
+    def "bounded buffer must respect byte cap"() {
+        given:
+        def source = PublishSubject.<Integer> create()
+        def subscriber = source.toFlowable(BackpressureStrategy.MISSING)
+                .lift(new BoundedBufferOperator<Integer>(
+                BackpressureConfig.bounded(100, BackpressureConfig.Overflow.DROP_OLDEST).withMaxBytes(10),
+                { it as long } as BoundedBufferOperator.Sizer, null))
+                .test(0)
+
+        when:
+        (1..6).each { source.onNext(it) }
+        subscriber.request(10)
+
+        then:
+        subscriber.values() == [6]
+    }
+
+    def "topic must bound the buffer of every subscriber on its own"() {
+        given:
+        def provider = new ReconnectTests.LoopbackProvider()
+        def client = new StompClient(provider)
+        client.connect()
+        def slow = client.topic('/topic/a', null, BackpressureConfig.bounded(3, BackpressureConfig.Overflow.DROP_LATEST)).test(1)
+        def fast = client.topic('/topic/a').test()
+        new PollingConditions(timeout: 5).eventually { assert client.connected && client.getTopicId('/topic/a') != null }
+        def id = client.getTopicId('/topic/a')
+
+        when:
+        (1..1000).each { provider.receive("MESSAGE\ndestination:/topic/a\nsubscription:$id\n\n$it\u0000") }
+        slow.request(1000)
+
+        then:
+        slow.values()*.payload == ['1', '2', '3', '4']
+        fast.values().size() == 1000
+        client.getOverflowCount('/topic/a') == 996
+
+        cleanup:
+        client.disconnect()
+    }
+}
@@ -0,0 +1,167 @@
+package ua.naiksoftware.stomp
+
+import org.java_websocket.drafts.Draft
+import org.java_websocket.framing.ContinuousFrame
+import org.java_websocket.framing.TextFrame
+import org.java_websocket.handshake.HandshakeImpl1Client
+import org.java_websocket.handshake.HandshakeImpl1Server
+import ua.naiksoftware.stomp.provider.CompressionMetrics
+import ua.naiksoftware.stomp.provider.ClientDraft
+import ua.naiksoftware.stomp.provider.PerMessageDeflateExtension
+
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+
+class CompressionTests extends Configuration {
+
+    static final String JSON = 'MESSAGE\ndestination:/topic/prices\n\n' + (1..50).collect {
+        '{"symbol":"ABC","price":' + it + ',"currency":"USD"}'
+    }.join(',') + '\u0000'
+
+    def metrics = new CompressionMetrics()
+
+    def "handshake must offer permessage-deflate without a trailing separator"() {
+        given:
+        def request = new HandshakeImpl1Client()
+
+        when:
+        draft(0).postProcessHandshakeRequestAsClient(request)
+
+        then:
+        request.getFieldValue('Sec-WebSocket-Extensions') == 'permessage-deflate; client_no_context_takeover'
+    }
+
+    def "only agreements the client can apply must be accepted"() {
+        expect:
+        new PerMessageDeflateExtension(-1, 0, metrics).acceptProvidedExtensionAsClient(response) == accepted
+
+        where:
+        response                                                             | accepted
+        'permessage-deflate'                                                 | true
+        'permessage-deflate; client_no_context_takeover'                     | true
+        'x-webkit-deflate-frame, permessage-deflate; server_max_window_bits=10' | true
+        'permessage-deflate; client_max_window_bits=10'                      | false
+        'x-webkit-deflate-frame'                                             | false
+        null                                                                 | false
+    }
+
+    def "compressed message must be sent with RSV1 and read back"() {
+        given:
+        def client = connected(draft(0))
+        def server = connected(draft(0))
+
+        when:
+        def bytes = client.createBinaryFrame(text(JSON, true))
+        def wire = bytes.duplicate()
+        def frames = server.translateFrame(bytes)
+
+        then:
+        (wire.get(0) & 0x40) != 0
+        wire.remaining() < JSON.length() / 3
+        frames.size() == 1
+        !frames[0].RSV1
+        string(frames[0].payloadData) == JSON
+        metrics.bytesBeforeCompression == JSON.length()
+        metrics.bytesAfterCompression < JSON.length() / 3
+        metrics.compressedMessagesSent == 1
+        metrics.bytesAfterDecompression == JSON.length()
+    }
+
+    def "messages below the minimum size must be sent as they are"() {
+        given:
+        def frame = text('SEND\n\nsmall\u0000', true)
+
+        when:
+        def bytes = connected(draft(64)).createBinaryFrame(frame)
+
+        then:
+        (bytes.get(0) & 0x40) == 0
+        string(frame.payloadData) == 'SEND\n\nsmall\u0000'
+        metrics.compressedMessagesSent == 0
+        metrics.bytesAfterCompression == metrics.bytesBeforeCompression
+    }
+
+    def "received messages must be inflated with the context kept"() {
+        given:
+        def server = connected(draft(0))
+        def sender = new PerMessageDeflateExtension(-1, 0, new CompressionMetrics())
+
+        expect:
+        (1..3).each {
+            def frame = text(JSON, true)
+            sender.encodeFrame(frame)
+            server.getExtension().decodeFrame(frame)
+            assert string(frame.payloadData) == JSON
+        }
+    }
+
+    def "fragmented message must be inflated into its last frame"() {
+        given:
+        def extension = new PerMessageDeflateExtension(-1, 0, metrics)
+        extension.acceptProvidedExtensionAsClient('permessage-deflate')
+        def compressed = text(JSON, true)
+        new PerMessageDeflateExtension(-1, 0, new CompressionMetrics()).encodeFrame(compressed)
+        def payload = compressed.payloadData
+        def half = payload.remaining().intdiv(2)
+
+        def first = new TextFrame()
+        first.fin = false
+        first.RSV1 = true
+        first.payload = ByteBuffer.wrap(payload.array(), payload.arrayOffset(), half).slice()
+        def last = new ContinuousFrame()
+        last.fin = true
+        last.payload = ByteBuffer.wrap(payload.array(), payload.arrayOffset() + half, payload.remaining() - half).slice()
+
+        when:
+        extension.decodeFrame(first)
+        extension.decodeFrame(last)
+
+        then:
+        first.payloadData.remaining() == 0
+        string(last.payloadData) == JSON
+        metrics.bytesBeforeDecompression == payload.remaining()
+        metrics.bytesAfterDecompression == JSON.length()
+    }
+
+    def "compression must not be enabled for providers without it"() {
+        when:
+        Stomp.over(Stomp.ConnectionProvider.OKHTTP, 'ws://localhost').withCompression(6, 256)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    private Draft draft(int minSize) {
+        new ClientDraft(new PerMessageDeflateExtension(-1, minSize, metrics), -1)
+    }
+
+    /**
+     * Runs the handshake so that the draft agrees on the extension.
+     */
+    private static Draft connected(Draft draft) {
+        def request = new HandshakeImpl1Client()
+        request.put('Sec-WebSocket-Key', 'dGhlIHNhbXBsZSBub25jZQ==')
+        def response = new HandshakeImpl1Server()
+        response.put('Upgrade', 'websocket')
+        response.put('Connection', 'Upgrade')
+        def accept = MessageDigest.getInstance('SHA-1')
+                .digest('dGhlIHNhbXBsZSBub25jZQ==258EAFA5-E914-47DA-95CA-C5AB0DC85B11'.getBytes('US-ASCII'))
+        response.put('Sec-WebSocket-Accept', accept.encodeBase64().toString())
+        response.put('Sec-WebSocket-Extensions', 'permessage-deflate; client_no_context_takeover')
+        assert draft.acceptHandshakeAsClient(request, response) == Draft.HandshakeState.MATCHED
+        return draft
+    }
+
+    private static TextFrame text(String text, boolean fin) {
+        def frame = new TextFrame()
+        frame.fin = fin
+        frame.payload = ByteBuffer.wrap(text.getBytes('UTF-8'))
+        return frame
+    }
+
+    private static String string(ByteBuffer buffer) {
+        def bytes = new byte[buffer.remaining()]
+        buffer.duplicate().get(bytes)
+        return new String(bytes, 'UTF-8')
+    }
+}
@@ -29,4 +29,23 @@ class ConnectionTests extends Configuration {
         cleanup:
         client.disconnect()
     }
+
+    def "compressed connection must be opened"() {
+        given:
+        def client = Stomp.over(Stomp.ConnectionProvider.JWS,
+                'ws://' + Configuration.testServer.getContainerIpAddress()
+                        + ':' + Configuration.testServer.getFirstMappedPort() + '/example-endpoint/websocket')
+                .withCompression(6, 0)
+        client.connect()
+        def testSubscriber = new TestSubscriber<LifecycleEvent>()
+
+        when:
+        client.lifecycle().subscribe(testSubscriber)
+
+        then:
+        testSubscriber.awaitCount(1).assertValue((Predicate) { event -> event.type == LifecycleEvent.Type.OPENED })
+
+        cleanup:
+        client.disconnect()
+    }
 }
@@ -0,0 +1,81 @@
+package ua.naiksoftware.stomp
+
+import io.reactivex.schedulers.Schedulers
+import spock.util.concurrent.PollingConditions
+import ua.naiksoftware.stomp.dto.StompMessage
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DispatchTests extends Configuration {
+
+    def provider = new ReconnectTests.LoopbackProvider()
+    def conditions = new PollingConditions(timeout: 5)
+
+    def "slow subscriber must not block the socket thread and keep its order"() {
+        given:
+        def client = new StompClient(provider).withDispatch(Schedulers.computation(), 4)
+        client.connect()
+        def release = new CountDownLatch(1)
+        def received = Collections.synchronizedList([])
+        client.topic('/topic/slow').subscribe { message ->
+            release.await(5, TimeUnit.SECONDS)
+            received << message.payload
+        }
+        conditions.eventually { assert client.connected && client.getTopicId('/topic/slow') }
+        def id = client.getTopicId('/topic/slow')
+
+        when:
+        (1..3).each { provider.receive("MESSAGE\ndestination:/topic/slow\nsubscription:$id\n\nm$it\u0000") }
+
+        then: 'the frames were queued while the subscriber is still blocked'
+        received.isEmpty()
+
+        when:
+        release.countDown()
+
+        then:
+        conditions.eventually { assert received == ['m1', 'm2', 'm3'] }
+    }
+
+    def "subscriptions on different lanes must be delivered in parallel"() {
+        given:
+        def lanes = new DispatchLanes(Schedulers.newThread(), 2)
+        // "a" and "b" hash to different lanes
+        def slow = new Subscription('a', '/a', null, BackpressureConfig.UNBOUNDED, AckMode.AUTO)
+        def fast = new Subscription('b', '/b', null, BackpressureConfig.UNBOUNDED, AckMode.AUTO)
+        def release = new CountDownLatch(1)
+        slow.messages.subscribe { release.await(5, TimeUnit.SECONDS) }
+        def fastMessages = fast.messages.test()
+        def message = StompMessage.from('MESSAGE\n\nx\u0000')
+
+        when:
+        lanes.deliver(slow, message)
+        lanes.deliver(fast, message)
+
+        then:
+        conditions.eventually { fastMessages.assertValueCount(1) }
+
+        cleanup:
+        release.countDown()
+        lanes.dispose()
+    }
+
+    def "queued messages must be delivered before completion"() {
+        given:
+        def lanes = new DispatchLanes(Schedulers.single(), 1)
+        def subscription = new Subscription('a', '/a', null, BackpressureConfig.UNBOUNDED, AckMode.AUTO)
+        def messages = subscription.messages.test()
+
+        when:
+        (1..100).each { lanes.deliver(subscription, StompMessage.from("MESSAGE\n\n$it\u0000")) }
+        lanes.complete(subscription)
+
+        then:
+        messages.await(5, TimeUnit.SECONDS)
+        messages.assertValueCount(100).assertComplete()
+
+        cleanup:
+        lanes.dispose()
+    }
+}
@@ -0,0 +1,75 @@
+package ua.naiksoftware.stomp
+
+import ua.naiksoftware.stomp.dto.StompCommand
+import ua.naiksoftware.stomp.dto.StompHeader
+import ua.naiksoftware.stomp.dto.StompMessage
+
+class HeartBeatTests extends Configuration {
+
+    long now = 1000
+    def timer = new HeartBeatTimer({ now } as Clock, 50, 8, null)
+
+    void advance(long ms) {
+        ms.intdiv(50).times {
+            now += 50
+            timer.tick()
+        }
+    }
+
+    static StompMessage connected(String heartBeat) {
+        new StompMessage(StompCommand.CONNECTED, [new StompHeader(StompHeader.HEART_BEAT, heartBeat)], null)
+    }
+
+    def "timeouts must fire within one tick after the deadline"() {
+        given:
+        def fired = []
+        def start = now
+        [0, 49, 51, 400, 1234].each { delay -> timer.schedule({ fired << now - start }, delay) }
+        def cancelled = timer.schedule({ fired << -1 }, 100)
+
+        when:
+        cancelled.cancel()
+        advance(2000)
+
+        then:
+        fired == [50, 50, 100, 400, 1250]
+    }
+
+    def "client must send heart-beat only when idle"() {
+        given:
+        def pings = []
+        def task = new HeartBeatTask({ pings << now }, null, timer)
+        task.setClientHeartbeat(1000)
+        task.consumeHeartBeat(connected('0,500'))
+
+        when:
+        advance(500)
+        task.onFrameSent()
+        advance(2500)
+
+        then:
+        pings == [2500, 3500]
+    }
+
+    def "server heart-beat must fail after three silent periods"() {
+        given:
+        def failures = 0
+        def task = new HeartBeatTask({}, { failures++ }, timer)
+        task.setServerHeartbeat(1000)
+        task.consumeHeartBeat(connected('1000,0'))
+
+        when:
+        advance(2000)
+        task.consumeHeartBeat(StompMessage.from('\n'))
+        advance(3000)
+
+        then:
+        failures == 0
+
+        when:
+        advance(1000)
+
+        then:
+        failures == 1
+    }
+}
@@ -0,0 +1,78 @@
+package ua.naiksoftware.stomp
+
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class MetricsTests extends Configuration {
+
+    def provider = new ReconnectTests.LoopbackProvider()
+    def conditions = new PollingConditions(timeout: 5)
+
+    def "metrics must count frames per destination and time parsing and dispatch"() {
+        given:
+        def client = new StompClient(provider).withMetrics()
+        client.connect()
+        def messages = client.topic('/topic/a').test()
+        conditions.eventually { assert client.connected && client.getTopicId('/topic/a') }
+        def id = client.getTopicId('/topic/a')
+
+        when:
+        provider.receive("MESSAGE\ndestination:/topic/a\nsubscription:$id\n\nhello\u0000" +
+                "MESSAGE\ndestination:/topic/a\nsubscription:$id\n\nhi\u0000")
+        client.send('/topic/b', 'abc').blockingAwait()
+
+        then:
+        conditions.eventually { assert messages.values().size() == 2 }
+        def metrics = client.metrics
+        metrics.getDestination('/topic/a').inFrames == 2
+        metrics.getDestination('/topic/a').inBytes == 7
+        metrics.getDestination('/topic/b').outFrames == 1
+        metrics.getDestination('/topic/b').outBytes == 3
+        metrics.dispatchNanos.count == 2
+        metrics.parseNanos.count >= 2
+        metrics.subscriptionCount == 1
+    }
+
+    def "snapshot must not change afterwards and be pushed to listeners"() {
+        given:
+        def client = new StompClient(provider).withMetrics()
+        client.connect()
+        conditions.eventually { assert client.connected }
+        client.send('/topic/b', 'abc').blockingAwait()
+        def snapshots = new LinkedBlockingQueue<StompMetrics.Snapshot>()
+
+        when:
+        def snapshot = client.metrics.snapshot()
+        client.send('/topic/b', 'abc').blockingAwait()
+        def listener = client.metrics.addListener({ snapshots.add(it) } as StompMetrics.Listener, 10)
+        def pushed = snapshots.poll(5, TimeUnit.SECONDS)
+        listener.dispose()
+
+        then:
+        snapshot.destinations['/topic/b'].outFrames == 1
+        pushed.destinations['/topic/b'].outFrames == 2
+    }
+
+    def "destinations over the limit must be counted together"() {
+        given:
+        def client = new StompClient(provider).withMetrics()
+        client.connect()
+        conditions.eventually { assert client.connected }
+
+        when:
+        (StompMetrics.MAX_DESTINATIONS + 10).times { client.send("/queue/reply-${it}", 'a').blockingAwait() }
+
+        then:
+        def snapshot = client.metrics.snapshot()
+        snapshot.destinations.size() == StompMetrics.MAX_DESTINATIONS + 1
+        snapshot.destinations[StompMetrics.OTHER_DESTINATIONS].outFrames == 10
+        client.metrics.getDestination("/queue/reply-${StompMetrics.MAX_DESTINATIONS + 5}") == null
+    }
+
+    def "metrics must be off by default"() {
+        expect:
+        new StompClient(provider).metrics == null
+    }
+}
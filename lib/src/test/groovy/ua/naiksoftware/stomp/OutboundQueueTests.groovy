@@ -0,0 +1,136 @@
+package ua.naiksoftware.stomp
+
+import io.reactivex.Completable
+import io.reactivex.exceptions.MissingBackpressureException
+import spock.util.concurrent.PollingConditions
+import ua.naiksoftware.stomp.dto.SendTemplate
+
+import java.nio.ByteBuffer
+
+class OutboundQueueTests extends Configuration {
+
+    long now = 0
+    def writes = []
+    def queue = new OutboundQueue(new OutboundQueue.Writer() {
+        @Override
+        Completable write(String frames) {
+            Completable.fromAction { writes << frames }
+        }
+
+        @Override
+        Completable write(ByteBuffer frame) {
+            Completable.fromAction { writes << frame.remaining() }
+        }
+    }, { now } as Clock, BackpressureConfig.UNBOUNDED)
+
+    def "queued frames must be flushed in order, text frames in one write"() {
+        given:
+        def sends = ['a', 'b'].collect { queue.enqueue(it).test() }
+        sends << queue.enqueue(ByteBuffer.allocate(3)).test()
+        sends << queue.enqueue('c').test()
+        now = 40
+
+        when:
+        queue.open()
+        sends << queue.enqueue('d').test()
+
+        then:
+        writes == ['ab', 3, 'c', 'd']
+        sends.every { it.assertComplete() }
+        queue.metrics.depth == 0
+        queue.metrics.dequeuedCount == 4
+        queue.metrics.maxTimeInQueueMs == 40
+    }
+
+    def "overflow must fail dropped sends"() {
+        given:
+        queue.setConfig(BackpressureConfig.bounded(2, overflow))
+        def sends = ['a', 'b', 'c'].collect { queue.enqueue(it).test() }
+
+        when:
+        queue.open()
+
+        then:
+        writes == [written]
+        sends*.errorCount() == failed
+        queue.metrics.overflowCount == 1
+
+        where:
+        overflow                                | written | failed
+        BackpressureConfig.Overflow.DROP_OLDEST | 'bc'    | [1, 0, 0]
+        BackpressureConfig.Overflow.DROP_LATEST | 'ab'    | [0, 0, 1]
+        BackpressureConfig.Overflow.KEEP_LATEST | 'ac'    | [0, 1, 0]
+        BackpressureConfig.Overflow.ERROR       | 'ab'    | [0, 0, 1]
+    }
+
+    def "queue must be bounded in bytes"() {
+        given:
+        queue.setConfig(BackpressureConfig.bounded(10, BackpressureConfig.Overflow.ERROR).withMaxBytes(4))
+        queue.enqueue('aé').test()
+
+        when:
+        def rejected = queue.enqueue('de').test()
+
+        then:
+        rejected.assertError(MissingBackpressureException)
+        queue.metrics.bytes == 3
+    }
+
+    def "cancelled and cleared sends must leave the queue"() {
+        given:
+        def cancelled = queue.enqueue('a').test()
+        def cleared = queue.enqueue('b').test()
+
+        when:
+        cancelled.dispose()
+
+        then:
+        queue.metrics.depth == 1
+
+        when:
+        queue.clear(new IllegalStateException('Disconnected'))
+
+        then:
+        cleared.assertError(IllegalStateException)
+        queue.metrics.depth == 0
+    }
+
+    def "transient frame must be copied only when it waits in the queue"() {
+        given:
+        def buffer = ByteBuffer.wrap([1, 2, 3] as byte[])
+        def queued = queue.enqueueTransient(buffer).test()
+        buffer.put(0, 9 as byte)
+
+        when:
+        queue.open()
+        def direct = queue.enqueueTransient(buffer).test()
+
+        then:
+        writes == [3, 3]
+        queued.assertComplete()
+        direct.assertComplete()
+        queue.metrics.dequeuedCount == 1
+    }
+
+    def "coalesced text frames must be written before a binary frame sent after them"() {
+        given:
+        def provider = new ReconnectTests.LoopbackProvider()
+        def client = new StompClient(provider)
+        client.connect()
+        new PollingConditions(timeout: 5).eventually { assert client.connected }
+        provider.setWriteCoalescing(10000, 1 << 20)
+
+        when:
+        def text = client.send('/a', 'x').test()
+        def binary = client.send(SendTemplate.of('/b'), 'y').test()
+
+        then:
+        binary.assertComplete()
+        text.assertComplete()
+        provider.sent.findAll { it.startsWith('SEND\n') } == ['SEND\ndestination:/a\n\nx\u0000',
+                                                               'SEND\ndestination:/b\ncontent-length:1\n\ny\u0000']
+
+        cleanup:
+        client.disconnect()
+    }
+}
@@ -20,6 +20,46 @@ class PathMatcherTests extends Configuration {
         'lorem/*/ipsum'   | 'lorem/ipsum'          | false
         'lorem/*/prefix*' | 'lorem/ipsum/prefix123'| true
         'lorem/*/pref*3'  | 'lorem/ipsum/prefix123'| true
+        'lorem.#.dolor'   | 'lorem.dolor'          | true
+        'lorem.#.dolor'   | 'lorem.ipsum.dolor'    | true
+        'lorem.#'         | 'lorem'                | true
+        'lorem.*'         | 'lorem'                | false
+        'lorem.*.dolor'   | 'lorem.ipsum.dolor'    | true
+        'lorem.*.dolor'   | 'lorem.ipsum.sit'      | false
+    }
+
+    def "rmq-style matcher must return all matching paths at once"() {
+        given:
+        def matcher = new RabbitPathMatcher()
+        ['lorem.*', 'lorem.#', 'lorem.ipsum', 'dolor.sit'].each { matcher.addPath(it) }
+
+        expect:
+        matcher.matchingPaths('lorem.ipsum') as Set == ['lorem.*', 'lorem.#', 'lorem.ipsum'] as Set
+        matcher.matchingPaths('lorem') as Set == ['lorem.#'] as Set
+
+        when:
+        matcher.removePath('lorem.#')
+
+        then:
+        matcher.matchingPaths('lorem.ipsum') as Set == ['lorem.*', 'lorem.ipsum'] as Set
+        matcher.matchingPaths('lorem').isEmpty()
+    }
+
+    def "rmq-style matcher must keep its caches bounded"() {
+        given:
+        def matcher = new RabbitPathMatcher(16)
+        matcher.addPath('lorem.*')
+
+        when:
+        (1..1000).each {
+            matcher.matches("dynamic.${it}.*", message("dynamic.${it}.x"))
+            matcher.matchingPaths("lorem.${it}")
+        }
+
+        then:
+        matcher.compiledPaths.size() <= 16
+        matcher.index.cache.size() <= 16
+        matcher.matchingPaths('lorem.1001') as Set == ['lorem.*'] as Set
     }
 
     def message(String dest) {
@@ -0,0 +1,99 @@
+package ua.naiksoftware.stomp
+
+import spock.util.concurrent.PollingConditions
+
+class ReceiptTests extends Configuration {
+
+    def provider = new ReconnectTests.LoopbackProvider()
+    def conditions = new PollingConditions(timeout: 5)
+
+    def sends() {
+        provider.sent.findAll { it.startsWith('SEND\n') }
+    }
+
+    def receiptId(String frame) {
+        (frame =~ /receipt:(\S+)/)[0][1]
+    }
+
+    def "send must complete on its receipt within the in-flight window"() {
+        given:
+        def client = new StompClient(provider).withReceipts(2)
+        client.connect()
+        conditions.eventually { assert client.connected }
+
+        when:
+        def results = (1..3).collect { client.send('/queue/a', "m$it").test() }
+
+        then:
+        conditions.eventually { assert sends().size() == 2 }
+        results.each { it.assertNotComplete() }
+
+        when:
+        provider.receive("RECEIPT\nreceipt-id:${receiptId(sends()[1])}\n\n\u0000")
+
+        then:
+        conditions.eventually {
+            results[1].assertComplete()
+            assert sends().size() == 3
+        }
+        results[0].assertNotComplete()
+        sends()[2].contains('m3')
+
+        when:
+        sends().each { provider.receive("RECEIPT\nreceipt-id:${receiptId(it)}\n\n\u0000") }
+
+        then:
+        conditions.eventually { results.each { it.assertComplete() } }
+        client.receiptLatency.count == 3
+    }
+
+    def "error frame must fail the send it refers to"() {
+        given:
+        def client = new StompClient(provider).withReceipts(4)
+        client.connect()
+        conditions.eventually { assert client.connected }
+        def result = client.send('/queue/a', 'bad').test()
+        conditions.eventually { assert sends().size() == 1 }
+
+        when:
+        provider.receive("ERROR\nreceipt-id:${receiptId(sends()[0])}\nmessage:malformed\n\n\u0000")
+
+        then:
+        result.await().assertError { it.message.contains('malformed') }
+    }
+
+    def "sends waiting for a receipt must fail on disconnect"() {
+        given:
+        def client = new StompClient(provider).withReceipts(1)
+        client.connect()
+        conditions.eventually { assert client.connected }
+        def results = (1..2).collect { client.send('/queue/a', "m$it").test() }
+        conditions.eventually { assert sends().size() == 1 }
+
+        when:
+        client.disconnect()
+
+        then:
+        results.each { it.await().assertError(IllegalStateException) }
+        sends().size() == 1
+    }
+
+    def "histogram buckets must bound recorded values within 1/16"() {
+        given:
+        def histogram = new LatencyHistogram()
+
+        when:
+        values.each { histogram.record(it) }
+
+        then:
+        histogram.getValueAtPercentile(percentile) >= expected
+        histogram.getValueAtPercentile(percentile) <= expected + expected.intdiv(16)
+
+        where:
+        values                  | percentile | expected
+        [3]                     | 50         | 3
+        (1..100).collect { it } | 50         | 50
+        (1..100).collect { it } | 99         | 99
+        [1, 1_000_000]          | 100        | 1_000_000
+    }
+}
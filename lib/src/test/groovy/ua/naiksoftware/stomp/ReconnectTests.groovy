@@ -0,0 +1,125 @@
+package ua.naiksoftware.stomp
+
+import io.reactivex.schedulers.Schedulers
+import spock.util.concurrent.PollingConditions
+import ua.naiksoftware.stomp.dto.LifecycleEvent
+import ua.naiksoftware.stomp.provider.AbstractConnectionProvider
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class ReconnectTests extends Configuration {
+
+    /**
+     * Answers CONNECT with CONNECTED and records everything sent.
+     */
+    static class LoopbackProvider extends AbstractConnectionProvider {
+
+        final List<String> sent = new CopyOnWriteArrayList<>()
+        volatile Object socket
+        volatile int connections
+        volatile boolean refuse
+
+        @Override
+        protected void createWebSocketConnection() {
+            connections++
+            if (refuse) {
+                Schedulers.single().scheduleDirect({ drop() })
+                return
+            }
+            socket = new Object()
+            Schedulers.single().scheduleDirect({ emitLifecycleEvent(new LifecycleEvent(LifecycleEvent.Type.OPENED)) })
+        }
+
+        @Override
+        protected void rawSend(String frames) {
+            sent << frames
+            if (frames.startsWith('CONNECT\n')) emitMessage('CONNECTED\nversion:1.2\n\n\u0000')
+        }
+
+        @Override
+        protected void rawDisconnect() {
+            drop()
+        }
+
+        @Override
+        protected Object getSocket() {
+            socket
+        }
+
+        void drop() {
+            socket = null
+            emitLifecycleEvent(new LifecycleEvent(LifecycleEvent.Type.CLOSED))
+        }
+
+        void receive(String frame) {
+            emitMessage(frame)
+        }
+    }
+
+    def provider = new LoopbackProvider()
+    def conditions = new PollingConditions(timeout: 5)
+
+    def "topic must survive reconnect and be subscribed again before other sends"() {
+        given:
+        // long enough for the send below to surely fall into the gap
+        def client = new StompClient(provider).withAutoReconnect(ReconnectPolicy.exponential(500, 1000).withJitter(0))
+        client.connect()
+        def messages = client.topic('/topic/a').test()
+        conditions.eventually { assert client.getTopicId('/topic/a') && provider.sent.any { it.startsWith('SUBSCRIBE\n') } }
+        def id = client.getTopicId('/topic/a')
+
+        when:
+        provider.drop()
+        client.send('/topic/b', 'during gap').subscribe()
+
+        then:
+        conditions.eventually {
+            assert client.connected
+            assert provider.sent.any { it.contains('during gap') }
+        }
+        provider.connections == 2
+        def subscribes = provider.sent.findIndexValues { it.startsWith('SUBSCRIBE\n') && it.contains("id:$id") }
+        subscribes.size() == 2
+        subscribes[1] < provider.sent.findIndexOf { it.contains('during gap') }
+
+        when:
+        provider.receive("MESSAGE\ndestination:/topic/a\nsubscription:$id\n\nhello\u0000")
+
+        then:
+        messages.assertValueCount(1).assertNotComplete()
+        client.reconnectMetrics.reconnectCount == 1
+        client.reconnectMetrics.sendsDuringLastGap == 1
+    }
+
+    def "client must disconnect after max attempts"() {
+        given:
+        def client = new StompClient(provider)
+                .withAutoReconnect(ReconnectPolicy.exponential(10, 20).withMaxAttempts(2))
+        client.connect()
+        def messages = client.topic('/topic/a').test()
+        conditions.eventually { assert client.connected }
+
+        when:
+        provider.refuse = true
+        provider.drop()
+
+        then:
+        conditions.eventually { messages.assertComplete() }
+        provider.connections == 3
+        client.reconnectMetrics.attemptCount == 2
+    }
+
+    def "backoff must grow up to the max delay, reduced by jitter"() {
+        given:
+        def policy = ReconnectPolicy.exponential(100, 1000)
+
+        expect:
+        (0..10).every { attempt ->
+            def backoff = Math.min(1000, 100 * 2**attempt)
+            def delay = policy.delayMs(attempt)
+            delay >= backoff / 2 && delay <= backoff
+        }
+        policy.withJitter(0).delayMs(3) == 800
+        !policy.withMaxAttempts(2).canAttempt(2)
+    }
+}
@@ -0,0 +1,123 @@
+package ua.naiksoftware.stomp
+
+import io.reactivex.functions.Predicate
+import io.reactivex.schedulers.Schedulers
+import spock.util.concurrent.PollingConditions
+
+class StompClientPoolTests extends Configuration {
+
+    def ring = new ConsistentHashRing<String>(['a', 'b', 'c', 'd'], StompClientPool.VIRTUAL_NODES)
+    def conditions = new PollingConditions(timeout: 5)
+    def keys = (0..<10000).collect { "/topic/destination-$it".toString() }
+
+    def "destinations must be spread evenly and stably"() {
+        when:
+        def owners = keys.collect { ring.get(it) }
+        def shares = owners.countBy { it }
+
+        then:
+        owners == keys.collect { ring.get(it) }
+        shares.keySet() == ['a', 'b', 'c', 'd'] as Set
+        shares.values().every { it > 1500 && it < 3500 }
+    }
+
+    def "only destinations of a skipped member must move"() {
+        when:
+        def moved = keys.findAll { ring.get(it, { it != 'b' } as Predicate) != ring.get(it) }
+
+        then:
+        moved.size() > 0
+        moved.every { ring.get(it) == 'b' }
+        keys.findAll { ring.get(it) == 'b' }.every { ring.get(it, { it != 'b' } as Predicate) != 'b' }
+    }
+
+    def "owner must be kept when no member passes"() {
+        expect:
+        keys.every { ring.get(it, { false } as Predicate) == ring.get(it) }
+    }
+
+    def "pool must not rebalance on the process-wide single scheduler"() {
+        given:
+        def scheduler = Schedulers.newThread()
+
+        expect:
+        Stomp.overPool(Stomp.ConnectionProvider.JWS, 'ws://127.0.0.1/', 2, null, null).scheduler.is(Schedulers.io())
+        Stomp.overPool(Stomp.ConnectionProvider.JWS, 'ws://127.0.0.1/', 2, null, null, scheduler).scheduler.is(scheduler)
+    }
+
+    def "topic must move off a dropped member and back once it is connected again"() {
+        given:
+        def (pool, providers) = pool()
+        def (a, b) = pool.clients
+        def destination = keys.find { pool.clientFor(it).is(a) }
+        def messages = pool.topic(destination).test()
+        conditions.eventually { assert subscribes(providers[0], destination) == 1 }
+
+        when:
+        providers[0].drop()
+
+        then:
+        conditions.eventually { assert subscribes(providers[1], destination) == 1 }
+
+        when:
+        providers[1].receive("MESSAGE\ndestination:$destination\nsubscription:${b.getTopicId(destination)}\n\nmoved\u0000")
+        a.connect()
+
+        then:
+        conditions.eventually {
+            assert subscribes(providers[0], destination) == 2
+            assert providers[1].sent.any { it.startsWith('UNSUBSCRIBE\n') }
+        }
+        messages.values()*.payload == ['moved']
+        messages.assertNotComplete()
+
+        cleanup:
+        pool.disconnect()
+    }
+
+    def "topic must wait while no member is connected"() {
+        given:
+        def (pool, providers) = pool()
+        def (a, b) = pool.clients
+        def destination = keys.find { pool.clientFor(it).is(a) }
+        def messages = pool.topic(destination).test()
+        conditions.eventually { assert subscribes(providers[0], destination) == 1 }
+
+        when:
+        providers[1].drop()
+        conditions.eventually { assert !b.connected }
+        providers[0].drop()
+        conditions.eventually { assert !pool.connected }
+        sleep(100)
+
+        then:
+        subscribes(providers[0], destination) == 1
+        subscribes(providers[1], destination) == 0
+        messages.assertNotComplete()
+
+        when:
+        b.connect()
+
+        then:
+        conditions.eventually { assert subscribes(providers[1], destination) == 1 }
+        subscribes(providers[0], destination) == 1
+
+        when:
+        pool.disconnect()
+
+        then:
+        conditions.eventually { messages.assertComplete() }
+    }
+
+    private static pool() {
+        def providers = (1..2).collect { new ReconnectTests.LoopbackProvider() }
+        def pool = new StompClientPool(providers.collect { new StompClient(it) }, Schedulers.io())
+        pool.connect()
+        new PollingConditions(timeout: 5).eventually { assert pool.clients.every { it.connected } }
+        [pool, providers]
+    }
+
+    private static int subscribes(ReconnectTests.LoopbackProvider provider, String destination) {
+        provider.sent.count { it.startsWith('SUBSCRIBE\n') && it.contains("destination:$destination\n") }
+    }
+}
@@ -0,0 +1,204 @@
+package ua.naiksoftware.stomp
+
+import ua.naiksoftware.stomp.dto.SendTemplate
+import ua.naiksoftware.stomp.dto.StompCommand
+import ua.naiksoftware.stomp.dto.StompFrameEncoder
+import ua.naiksoftware.stomp.dto.StompHeader
+import ua.naiksoftware.stomp.dto.StompMessage
+
+import java.nio.ByteBuffer
+
+class StompMessageTests extends Configuration {
+
+    def "frame must be parsed with headers and payload"() {
+        when:
+        def message = StompMessage.from('MESSAGE\ndestination:/topic/greetings\nsubscription:sub-0\n\nhello\u0000')
+
+        then:
+        message.stompCommand == StompCommand.MESSAGE
+        message.findHeader(StompHeader.DESTINATION) == '/topic/greetings'
+        message.findHeader(StompHeader.SUBSCRIPTION) == 'sub-0'
+        message.payload == 'hello'
+    }
+
+    def "header values must be unescaped and may contain colons"() {
+        when:
+        def message = StompMessage.from(frame)
+
+        then:
+        message.findHeader(key) == value
+
+        where:
+        frame                                              | key        | value
+        'MESSAGE\nlocation:http://host:80/path\n\n\u0000'  | 'location' | 'http://host:80/path'
+        'MESSAGE\nescaped:a\\cb\\nc\\\\d\\re\n\n\u0000'    | 'escaped'  | 'a:b\nc\\d\re'
+        'CONNECTED\nraw:a\\cb\n\n\u0000'                   | 'raw'      | 'a\\cb'
+    }
+
+    def "first of repeated headers must win"() {
+        expect:
+        StompMessage.from('MESSAGE\nfoo:first\nfoo:second\n\n\u0000').findHeader('foo') == 'first'
+    }
+
+    def "content-length must bound the payload"() {
+        expect:
+        StompMessage.from(frame).payload == payload
+
+        where:
+        frame                                                  | payload
+        'MESSAGE\ncontent-length:5\n\nab\u0000cd\u0000'         | 'ab\u0000cd'
+        'MESSAGE\r\ncontent-length:3\r\n\r\néa\u0000'      | 'éa'
+        'MESSAGE\n\n\u0000'                                     | null
+    }
+
+    def "heart-beat must be parsed without allocation"() {
+        expect:
+        StompMessage.from(eol).is(StompMessage.from('\n'))
+        StompMessage.from(eol).payload == '\n'
+
+        where:
+        eol << ['\n', '\r\n']
+    }
+
+    def "batched frames must all be parsed"() {
+        when:
+        def messages = StompMessage.fromBatch('MESSAGE\ndestination:/a\n\none\u0000\n' +
+                'MESSAGE\ncontent-length:3\n\nt\u0000o\u0000' +
+                'MESSAGE\ndestination:/c\n\n\u0000\n')
+
+        then:
+        messages.size() == 3
+        messages*.payload == ['one', 't\u0000o', null]
+        messages[2].findHeader(StompHeader.DESTINATION) == '/c'
+    }
+
+    def "batched frames must carry when they were received"() {
+        when:
+        def text = StompMessage.fromBatch('MESSAGE\n\none\u0000MESSAGE\n\ntwo\u0000', 42)
+        def binary = StompMessage.fromBatch(ByteBuffer.wrap('MESSAGE\n\none\u0000'.getBytes('UTF-8')), 43)
+        def heartBeat = StompMessage.fromBatch('\n', 44)
+
+        then:
+        text*.receivedNanos == [42, 42]
+        binary*.receivedNanos == [43]
+        heartBeat[0].receivedNanos == 0
+        StompMessage.fromBatch('MESSAGE\n\none\u0000')[0].receivedNanos == 0
+    }
+
+    def "binary payload must survive round trip without decoding"() {
+        given:
+        byte[] body = [1, 0, 2, 3]
+        def message = StompMessage.binary(StompCommand.SEND,
+                [new StompHeader(StompHeader.DESTINATION, '/queue/binary')], ByteBuffer.wrap(body))
+
+        when:
+        def parsed = StompMessage.from(message.compileBytes())
+        def bytes = parsed.payloadBytes
+
+        then:
+        parsed.binary
+        parsed.findHeader(StompHeader.CONTENT_LENGTH) == '4'
+        bytes.readOnly
+        bytes.remaining() == 4
+        (0..3).collect { bytes.get(it) } == [1, 0, 2, 3]
+    }
+
+    def "well-known headers must be found by equal keys and parsed keys interned"() {
+        given:
+        def message = StompMessage.from('MESSAGE\nx-custom:1\ndestination:/a\nsubscription:s\ndestination:/b\n\n\u0000')
+
+        expect:
+        message.findHeader(new String('destination'.toCharArray())) == '/a'
+        message.findHeader(StompHeader.SUBSCRIPTION) == 's'
+        message.findHeader('x-custom') == '1'
+        message.findHeader(StompHeader.MESSAGE_ID) == null
+        message.stompHeaders*.key == ['x-custom', 'destination', 'subscription', 'destination']
+        message.stompHeaders[1].key.is(StompHeader.DESTINATION)
+    }
+
+    def "headers given to the constructor must be kept and compiled in order"() {
+        given:
+        def headers = [new StompHeader('b', '1'), new StompHeader(StompHeader.DESTINATION, '/a')]
+        def message = new StompMessage(StompCommand.SEND, headers, 'x')
+
+        expect:
+        message.stompHeaders.is(headers)
+        message.findHeader(StompHeader.DESTINATION) == '/a'
+        message.compile() == 'SEND\nb:1\ndestination:/a\n\nx\u0000'
+    }
+
+    def "lazily decoded message frame must match the eager decoding"() {
+        given:
+        def headers = 'destination:/a\nx-escaped:a\\cb\nsubscription:s\ncontent-length:5\n'
+        def lazy = StompMessage.from("MESSAGE\n$headers\nab\u0000cd\u0000")
+        def eager = StompMessage.from("ERROR\n$headers\nab\u0000cd\u0000")
+
+        expect:
+        lazy.findHeader(StompHeader.DESTINATION) == '/a'
+        lazy.payloadLength == 5
+        lazy.findHeader('x-escaped') == 'a:b'
+        lazy.stompHeaders*.key == eager.stompHeaders*.key
+        lazy.stompHeaders*.value == eager.stompHeaders*.value
+        lazy.payload == eager.payload
+        lazy.payload.is(lazy.payload)
+        lazy.compile() == eager.compile().replaceFirst('ERROR', 'MESSAGE')
+    }
+
+    def "payload length must be counted in UTF-8 bytes"() {
+        given:
+        def body = 'aé€😀'
+
+        expect:
+        new StompMessage(StompCommand.SEND, [], body).payloadLength == 10
+        StompMessage.from("MESSAGE\ndestination:/a\n\n$body\u0000").payloadLength == 10
+        StompMessage.binary(StompCommand.SEND, [], ByteBuffer.wrap(body.getBytes('UTF-8'))).payloadLength == 10
+        StompFrameEncoder.utf8Length(body) == body.getBytes('UTF-8').length
+    }
+
+    def "header values must be escaped except in CONNECT frames"() {
+        expect:
+        new StompMessage(command, [new StompHeader('k', 'a:b\\c\nd')], null).compile() == frame
+        StompMessage.from(new StompMessage(StompCommand.SEND, [new StompHeader('k', 'a:b\\c\nd')], null).compile())
+                .findHeader('k') == 'a:b\\c\nd'
+
+        where:
+        command              | frame
+        StompCommand.SEND    | 'SEND\nk:a\\cb\\\\c\\nd\n\n\u0000'
+        StompCommand.CONNECT | 'CONNECT\nk:a:b\\c\nd\n\n\u0000'
+    }
+
+    def "encoder must write template frames into one reused buffer"() {
+        given:
+        def template = SendTemplate.of('/queue/a:b', [new StompHeader('x', '1'), new StompHeader(StompHeader.CONTENT_LENGTH, '0')])
+        def encoder = new StompFrameEncoder(16)
+
+        when:
+        def first = encoder.encode(template, payload)
+        def parsed = StompMessage.from(first)
+
+        then:
+        parsed.stompCommand == StompCommand.SEND
+        parsed.findHeader(StompHeader.DESTINATION) == '/queue/a:b'
+        parsed.findHeader('x') == '1'
+        parsed.findHeader(StompHeader.CONTENT_LENGTH) == String.valueOf(payload.getBytes('UTF-8').length)
+        parsed.payload == payload
+        encoder.encode(template, 'next').is(first)
+
+        where:
+        payload << ['hello', 'é\u0000😀 long enough to grow the buffer']
+    }
+
+    def "encoder must copy binary payloads as they are"() {
+        given:
+        def body = ByteBuffer.wrap([0, 1, 2, 3, 4] as byte[])
+        body.position(1)
+
+        when:
+        def frame = new StompFrameEncoder().encode(SendTemplate.of('/b'), body)
+        def bytes = StompMessage.from(frame).payloadBytes
+
+        then:
+        body.position() == 1
+        (0..3).collect { bytes.get(it) } == [1, 2, 3, 4]
+    }
+}
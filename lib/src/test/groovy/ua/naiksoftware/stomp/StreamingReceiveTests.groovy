@@ -0,0 +1,83 @@
+package ua.naiksoftware.stomp
+
+import org.java_websocket.WebSocket
+import org.java_websocket.WebSocketImpl
+import org.java_websocket.WebSocketListener
+import org.java_websocket.extensions.IExtension
+import org.java_websocket.framing.ContinuousFrame
+import org.java_websocket.framing.TextFrame
+import ua.naiksoftware.stomp.dto.StompMessage
+import ua.naiksoftware.stomp.provider.ClientDraft
+
+import java.nio.ByteBuffer
+
+class StreamingReceiveTests extends Configuration {
+
+    static final String BODY = (1..2000).collect { "é${it}😀" }.join(',')
+    static final String FRAME = 'MESSAGE\ndestination:/topic/snapshot\n\n' + BODY + '\u0000'
+
+    def texts = []
+    def binaries = []
+    def socket = new WebSocketImpl([
+            onWebsocketMessage: { WebSocket conn, message ->
+                if (message instanceof String) texts << message else binaries << message
+            }
+    ] as WebSocketListener, new ClientDraft((IExtension) null, 1024))
+
+    def "large text message must be handed over as bytes"() {
+        when:
+        socket.draft.processFrame(socket, text(FRAME, true))
+        socket.draft.processFrame(socket, text('MESSAGE\n\nsmall\u0000', true))
+
+        then:
+        texts == ['MESSAGE\n\nsmall\u0000']
+        binaries.size() == 1
+        StompMessage.from(binaries[0] as ByteBuffer).binary
+        StompMessage.from(binaries[0] as ByteBuffer).payloadReader.text == BODY
+    }
+
+    def "fragmented text message must be joined as bytes"() {
+        given:
+        def bytes = FRAME.getBytes('UTF-8')
+        def first = text(new String(bytes, 0, 10, 'UTF-8'), false)
+        def last = new ContinuousFrame()
+        last.fin = true
+        last.payload = ByteBuffer.wrap(bytes, 10, bytes.length - 10).slice()
+
+        when:
+        socket.draft.processFrame(socket, first)
+        socket.draft.processFrame(socket, last)
+
+        then:
+        texts.empty
+        StompMessage.from(binaries[0] as ByteBuffer).payloadStream.getText('UTF-8') == BODY
+    }
+
+    def "body must be streamed from a view of the frame"() {
+        given:
+        def binary = StompMessage.from(ByteBuffer.wrap(FRAME.getBytes('UTF-8')))
+        def text = StompMessage.from(FRAME)
+
+        expect:
+        binary.payloadStream.available() == BODY.getBytes('UTF-8').length
+        binary.payloadReader.text == BODY
+        text.payloadReader.text == BODY
+        text.payloadStream.getText('UTF-8') == BODY
+        StompMessage.from('MESSAGE\n\n\u0000').payloadReader == null
+    }
+
+    def "streaming receive must not be enabled for providers without it"() {
+        when:
+        Stomp.over(Stomp.ConnectionProvider.OKHTTP, 'ws://localhost').withStreamingReceive(1024)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    private static TextFrame text(String text, boolean fin) {
+        def frame = new TextFrame()
+        frame.fin = fin
+        frame.payload = ByteBuffer.wrap(text.getBytes('UTF-8'))
+        return frame
+    }
+}
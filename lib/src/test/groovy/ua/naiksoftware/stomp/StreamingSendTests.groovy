@@ -0,0 +1,314 @@
+package ua.naiksoftware.stomp
+
+import io.reactivex.schedulers.Schedulers
+import org.java_websocket.WebSocket
+import org.java_websocket.WebSocketImpl
+import org.java_websocket.drafts.Draft
+import org.java_websocket.drafts.Draft_6455
+import org.java_websocket.framing.Framedata
+import org.java_websocket.handshake.ClientHandshake
+import org.java_websocket.server.WebSocketServer
+import spock.util.concurrent.PollingConditions
+import ua.naiksoftware.stomp.dto.SendTemplate
+import ua.naiksoftware.stomp.dto.StompHeader
+import ua.naiksoftware.stomp.dto.StompMessage
+import ua.naiksoftware.stomp.dto.StreamingFrame
+
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.ReadableByteChannel
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class StreamingSendTests extends Configuration {
+
+    static final byte[] BLOB = (0..<200000).collect { (byte) (it % 251) } as byte[]
+
+    def template = SendTemplate.of('/queue/upload', [new StompHeader('x-name', 'blob.bin')])
+    def conditions = new PollingConditions(timeout: 5)
+
+    def "frame must be read in small pieces with its body in between"() {
+        given:
+        def frame = new StreamingFrame(template, 'r-1', Channels.newChannel(new ByteArrayInputStream(BLOB)), BLOB.length)
+        def out = ByteBuffer.allocate((int) frame.length())
+        def piece = ByteBuffer.allocate(7)
+
+        when:
+        while (frame.read(piece) >= 0) {
+            out.put(piece.flip())
+            piece.clear()
+        }
+        def message = StompMessage.from(out.flip())
+
+        then:
+        out.limit() == frame.length()
+        message.findHeader(StompHeader.DESTINATION) == '/queue/upload'
+        message.findHeader('x-name') == 'blob.bin'
+        message.findHeader(StompHeader.RECEIPT) == 'r-1'
+        message.findHeader(StompHeader.CONTENT_LENGTH) == '200000'
+        bytes(message.payloadBytes) == BLOB
+    }
+
+    def "frame must fail if the body ends early"() {
+        given:
+        def frame = new StreamingFrame(template, null, Channels.newChannel(new ByteArrayInputStream(new byte[10])), 11)
+
+        when:
+        while (frame.read(ByteBuffer.allocate(64)) >= 0) {}
+
+        then:
+        thrown(EOFException)
+    }
+
+    def "body must be streamed only while connected"() {
+        given:
+        def provider = new ReconnectTests.LoopbackProvider()
+        def client = new StompClient(provider)
+        def text = ('x' * 1000).getBytes('UTF-8')
+
+        when:
+        def offline = client.send(template, new ByteArrayInputStream(BLOB), BLOB.length).test()
+        client.connect()
+        conditions.eventually { assert client.connected }
+        client.send(template, ByteBuffer.wrap(text)).test().awaitTerminalEvent()
+
+        then:
+        offline.assertError(IllegalStateException)
+        def sent = StompMessage.from(provider.sent.last())
+        sent.findHeader(StompHeader.CONTENT_LENGTH) == '1000'
+        sent.payload == 'x' * 1000
+
+        cleanup:
+        client.disconnect()
+    }
+
+    def "body must not overtake frames sent before it"() {
+        given:
+        def provider = new ReconnectTests.LoopbackProvider()
+        def client = new StompClient(provider)
+        def queued = client.send('/a', 'queued').test()
+
+        when:
+        def offline = client.send(template, ByteBuffer.wrap('early'.getBytes('UTF-8'))).test()
+        client.connect()
+        conditions.eventually { assert client.connected }
+        provider.setWriteCoalescing(10000, 1 << 20)
+        def coalesced = client.send('/a', 'coalesced').test()
+        client.send(template, new ByteArrayInputStream('late'.getBytes('UTF-8')), 4).test().awaitTerminalEvent()
+
+        then:
+        offline.assertError(IllegalStateException)
+        queued.assertComplete()
+        coalesced.assertComplete()
+        provider.sent.findAll { it.startsWith('SEND\n') }.collect { StompMessage.from(it).payload } == ['queued', 'coalesced', 'late']
+
+        cleanup:
+        client.disconnect()
+    }
+
+    def "frames sent during an upload must be queued behind it instead of blocking"() {
+        given:
+        def provider = new BlockingUploadProvider()
+        def client = new StompClient(provider)
+        client.connect()
+        conditions.eventually { assert client.connected }
+
+        when:
+        def first = client.send(template, ByteBuffer.wrap('first'.getBytes('UTF-8'))).subscribeOn(Schedulers.io()).test()
+        assert provider.started.await(5, TimeUnit.SECONDS)
+        def during = client.send('/a', 'during').test()
+        def second = client.send(template, ByteBuffer.wrap('second'.getBytes('UTF-8'))).test()
+
+        then:
+        during.assertNotComplete()
+        second.assertNotComplete()
+
+        when:
+        provider.release.countDown()
+
+        then:
+        conditions.eventually { assert second.completions() == 1 }
+        first.assertComplete()
+        during.assertComplete()
+        provider.sent.findAll { it.startsWith('SEND\n') }.collect { StompMessage.from(it).payload } == ['first', 'during', 'second']
+
+        cleanup:
+        client.disconnect()
+    }
+
+    def "upload waiting behind another must fail when the connection is lost"() {
+        given:
+        def provider = new BlockingUploadProvider()
+        def client = new StompClient(provider)
+        client.connect()
+        conditions.eventually { assert client.connected }
+        client.send(template, ByteBuffer.wrap('first'.getBytes('UTF-8'))).subscribeOn(Schedulers.io()).subscribe({}, {})
+        assert provider.started.await(5, TimeUnit.SECONDS)
+        def second = client.send(template, ByteBuffer.wrap('second'.getBytes('UTF-8'))).test()
+
+        when:
+        provider.drop()
+
+        then:
+        second.assertError(IllegalStateException)
+
+        cleanup:
+        provider.release.countDown()
+        client.disconnect()
+    }
+
+    def "upload must postpone the client heart-beat and not hold the timer thread"() {
+        given:
+        long now = 1000
+        def timer = new HeartBeatTimer({ now } as Clock, 50, 8, null)
+        def advance = { long ms -> ms.intdiv(50).times { now += 50; timer.tick() } }
+        def pingThreads = new CopyOnWriteArrayList<Thread>()
+        def provider = new ReconnectTests.LoopbackProvider() {
+            @Override
+            protected void rawSend(String frames) {
+                if (frames == '\r\n') pingThreads << Thread.currentThread()
+                if (frames.startsWith('CONNECT\n')) {
+                    emitMessage('CONNECTED\nversion:1.2\nheart-beat:0,1000\n\n\u0000')
+                } else {
+                    super.rawSend(frames)
+                }
+            }
+
+            @Override
+            protected void rawSend(ReadableByteChannel message, long length) {
+                // 4 seconds of upload, a chunk every 400 ms
+                def chunk = ByteBuffer.allocate((int) length.intdiv(10))
+                10.times {
+                    message.read(chunk.clear())
+                    advance(400)
+                }
+            }
+        }
+        def client = new StompClient(provider).withHeartBeatTimer(timer).withClientHeartbeat(1000)
+        client.connect()
+        conditions.eventually { assert client.connected }
+
+        when:
+        client.send(template, ByteBuffer.allocate(1000)).test().awaitTerminalEvent()
+
+        then:
+        pingThreads.empty
+
+        when:
+        advance(1500)
+
+        then:
+        conditions.eventually { assert pingThreads.size() == 1 }
+        pingThreads[0] != Thread.currentThread()
+
+        cleanup:
+        client.disconnect()
+    }
+
+    def "Java-WebSocket provider must send a large body as continuation frames"() {
+        given:
+        def server = new RecordingServer()
+        server.start()
+        assert server.started.await(5, TimeUnit.SECONDS)
+        def client = Stomp.over(Stomp.ConnectionProvider.JWS, "ws://127.0.0.1:${server.port}/")
+        client.connect()
+        conditions.eventually { assert client.connected }
+        def file = File.createTempFile('blob', '.bin')
+        file.bytes = BLOB
+
+        when:
+        client.send(template, file).blockingAwait(5, TimeUnit.SECONDS)
+
+        then:
+        conditions.eventually { assert server.messages.size() == 1 }
+        server.fragments.size() == 4
+        bytes(StompMessage.from(server.messages[0]).payloadBytes) == BLOB
+
+        cleanup:
+        client.disconnect()
+        server.stop()
+        file.delete()
+    }
+
+    /**
+     * Holds the first upload until released, as the Java-WebSocket provider does while its frames are queued.
+     */
+    static class BlockingUploadProvider extends ReconnectTests.LoopbackProvider {
+
+        final started = new CountDownLatch(1)
+        final release = new CountDownLatch(1)
+
+        @Override
+        protected void rawSend(ReadableByteChannel message, long length) {
+            started.countDown()
+            release.await(5, TimeUnit.SECONDS)
+            super.rawSend(message, length)
+        }
+    }
+
+    static class RecordingServer extends WebSocketServer {
+
+        final started = new CountDownLatch(1)
+        final List<Framedata> fragments = new CopyOnWriteArrayList<>()
+        final List<ByteBuffer> messages = new CopyOnWriteArrayList<>()
+
+        RecordingServer() {
+            super(new InetSocketAddress('127.0.0.1', 0), [new CountingDraft()] as List<Draft>)
+            ((CountingDraft) draft[0]).fragments = fragments
+        }
+
+        @Override
+        void onMessage(WebSocket conn, String message) {
+            if (message.startsWith('CONNECT\n')) conn.send('CONNECTED\nversion:1.2\n\n\u0000')
+        }
+
+        @Override
+        void onMessage(WebSocket conn, ByteBuffer message) {
+            messages << message
+        }
+
+        @Override
+        void onStart() {
+            started.countDown()
+        }
+
+        @Override
+        void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        void onError(WebSocket conn, Exception ex) {
+            ex.printStackTrace()
+        }
+    }
+
+    /**
+     * Java-WebSocket 1.3.6 no longer reports fragments to the server, so the draft records them.
+     */
+    static class CountingDraft extends Draft_6455 {
+
+        List<Framedata> fragments
+
+        @Override
+        void processFrame(WebSocketImpl webSocket, Framedata frame) {
+            if (!frame.fin || frame.opcode == Framedata.Opcode.CONTINUOUS) fragments << frame
+            super.processFrame(webSocket, frame)
+        }
+
+        @Override
+        Draft copyInstance() {
+            new CountingDraft(fragments: fragments)
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        def bytes = new byte[buffer.remaining()]
+        buffer.duplicate().get(bytes)
+        return bytes
+    }
+}
@@ -0,0 +1,78 @@
+package ua.naiksoftware.stomp
+
+import spock.util.concurrent.PollingConditions
+
+class TransactionTests extends Configuration {
+
+    def provider = new ReconnectTests.LoopbackProvider()
+    def conditions = new PollingConditions(timeout: 5)
+
+    def "transaction must be written in one write ending in commit"() {
+        given:
+        def client = new StompClient(provider)
+        client.connect()
+        conditions.eventually { assert client.connected }
+        def transaction = client.beginTransaction()
+        def tx = transaction.id
+
+        when:
+        (1..50).each { transaction.send('/queue/a', "m$it") }
+        def result = transaction.commit().test()
+
+        then:
+        result.await().assertComplete()
+        def write = provider.sent.last()
+        write.startsWith("BEGIN\ntransaction:$tx\n\n\u0000SEND\ndestination:/queue/a\ntransaction:$tx\n\nm1\u0000")
+        write.endsWith("SEND\ndestination:/queue/a\ntransaction:$tx\n\nm50\u0000COMMIT\ntransaction:$tx\n\n\u0000")
+        write.count('SEND\n') == 50
+    }
+
+    def "failed body must abort without writing anything"() {
+        given:
+        def client = new StompClient(provider)
+        client.connect()
+        conditions.eventually { assert client.connected }
+        def sentBefore = provider.sent.size()
+
+        when:
+        def result = client.transaction { tx ->
+            tx.send('/queue/a', 'one')
+            throw new IOException('failed')
+        }.test()
+
+        then:
+        result.await().assertError(IOException)
+        provider.sent.size() == sentBefore
+    }
+
+    def "commit refused by the broker must be aborted"() {
+        given:
+        def client = new StompClient(provider).withReceipts(1)
+        client.connect()
+        conditions.eventually { assert client.connected }
+        def transaction = client.beginTransaction().send('/queue/a', 'one')
+
+        when:
+        def result = transaction.commit().test()
+        conditions.eventually { assert provider.sent.last().contains('COMMIT\n') }
+        def receiptId = (provider.sent.last() =~ /receipt:(\S+)/)[0][1]
+        provider.receive("ERROR\nreceipt-id:$receiptId\nmessage:refused\n\n\u0000")
+
+        then:
+        result.await().assertError(IllegalStateException)
+        provider.sent.last() == "ABORT\ntransaction:${transaction.id}\n\n\u0000".toString()
+    }
+
+    def "finished transaction must not accept sends"() {
+        given:
+        def transaction = new StompClient(provider).beginTransaction()
+        transaction.abort()
+
+        when:
+        transaction.send('/queue/a', 'late')
+
+        then:
+        thrown(IllegalStateException)
+        transaction.commit().test().assertError(IllegalStateException)
+    }
+}
@@ -0,0 +1,88 @@
+package ua.naiksoftware.stomp
+
+import io.reactivex.schedulers.Schedulers
+import spock.util.concurrent.PollingConditions
+
+import java.nio.ByteBuffer
+import java.util.concurrent.Executors
+
+class TypedTopicTests extends Configuration {
+
+    def provider = new ReconnectTests.LoopbackProvider()
+    def conditions = new PollingConditions(timeout: 5)
+
+    def receive(StompClient client, String dest, List<String> payloads) {
+        conditions.eventually { assert client.getTopicId(dest) }
+        def id = client.getTopicId(dest)
+        payloads.each { provider.receive("MESSAGE\ndestination:$dest\nsubscription:$id\n\n$it\u0000") }
+    }
+
+    def "decoded values must keep the receive order while decoding concurrently"() {
+        given:
+        def executor = Executors.newFixedThreadPool(4)
+        def client = new StompClient(provider).withDecoding(Schedulers.from(executor), 4)
+        client.connect()
+        def threads = Collections.synchronizedSet(new HashSet<String>())
+        def values = client.topicAs('/topic/n', { message ->
+            def n = message.payloadChars.toString() as int
+            threads << Thread.currentThread().name
+            // later messages decode faster, so they would overtake without ordering
+            Thread.sleep(20 - n)
+            n
+        } as Decoder).test()
+
+        when:
+        receive(client, '/topic/n', (0..19).collect { "$it".toString() })
+
+        then:
+        conditions.eventually { assert values.values().size() == 20 }
+        values.values() == (0..19).toList()
+        !threads.any { it.contains('Single') }
+        threads.size() > 1
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "built-in types must decode without a factory"() {
+        given:
+        def client = new StompClient(provider)
+        client.connect()
+        def strings = client.topicAs('/topic/s', String).test()
+        def bytes = client.topicAs('/topic/b', byte[]).test()
+        def buffers = client.topicAs('/topic/bb', ByteBuffer).test()
+
+        when:
+        receive(client, '/topic/s', ['hello'])
+        receive(client, '/topic/b', ['hi'])
+        receive(client, '/topic/bb', ['hey'])
+
+        then:
+        conditions.eventually {
+            assert strings.values() == ['hello']
+            assert bytes.values().size() == 1 && buffers.values().size() == 1
+        }
+        new String(bytes.values()[0], 'UTF-8') == 'hi'
+        buffers.values()[0].remaining() == 3
+    }
+
+    def "factory must decode other types and unknown types must fail"() {
+        given:
+        def factory = new Decoder.Factory() {
+            @Override
+            def <T> Decoder<T> create(Class<T> type) {
+                type == Integer ? ({ message -> message.payload as Integer } as Decoder<T>) : null
+            }
+        }
+        def client = new StompClient(provider).withDecoderFactory(factory)
+        client.connect()
+        def ints = client.topicAs('/topic/i', Integer).test()
+
+        when:
+        receive(client, '/topic/i', ['42'])
+
+        then:
+        conditions.eventually { assert ints.values() == [42] }
+        client.topicAs('/topic/u', URI).test().assertError(IllegalArgumentException)
+    }
+}